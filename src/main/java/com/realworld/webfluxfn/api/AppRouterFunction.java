@@ -1,8 +1,11 @@
 package com.realworld.webfluxfn.api;
 
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RequestPredicate;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
@@ -11,6 +14,7 @@ import static org.springframework.web.reactive.function.server.RouterFunctions.n
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 
 @Configuration
+@EnableConfigurationProperties(PagingProperties.class)
 public class AppRouterFunction {
 
     @Bean
@@ -22,11 +26,15 @@ public class AppRouterFunction {
                                 .andRoute(POST("/{slug}/comments"), articleHandler::addComment)
                                 .andRoute(POST("/{slug}/favorite"), articleHandler::favoriteArticle)
                                 .andRoute(DELETE("/{slug}/favorite"), articleHandler::unfavoriteArticle)
+                                .andRoute(GET("/feed").and(acceptsExactly(MediaType.APPLICATION_NDJSON)), articleHandler::streamFeedPage)
                                 .andRoute(GET("/feed"), articleHandler::feed)
+                                .andRoute(GET("/feed/stream"), articleHandler::streamFeed)
                                 .andRoute(GET("/{slug}"), articleHandler::getArticle)
                                 .andRoute(PUT("/{slug}"), articleHandler::updateArticle)
                                 .andRoute(DELETE("/{slug}"), articleHandler::deleteArticle)
                                 .andRoute(method(HttpMethod.POST), articleHandler::createArticle)
+                                .andRoute(method(HttpMethod.GET).and(acceptsExactly(MediaType.APPLICATION_NDJSON)),
+                                        articleHandler::streamArticles)
                                 .andRoute(method(HttpMethod.GET), articleHandler::getArticles)
                 ).andRoute(GET("/tags"), articleHandler::getTags)
         );
@@ -49,5 +57,11 @@ public class AppRouterFunction {
         );
     }
 
+    /**
+     * Unlike {@code accept(mediaType)}, does not match the requests accepting any media type,
+     * so that only the clients asking for the media type get it.
+     */
+    private static RequestPredicate acceptsExactly(final MediaType mediaType) {
+        return request -> request.headers().accept().stream().anyMatch(mediaType::equalsTypeAndSubtype);
+    }
 }
-
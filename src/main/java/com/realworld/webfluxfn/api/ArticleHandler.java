@@ -5,18 +5,26 @@ import com.realworld.webfluxfn.dto.ArticleWrapper.CreateArticleRequestWrapper;
 import com.realworld.webfluxfn.dto.ArticleWrapper.UpdateArticleRequestWrapper;
 import com.realworld.webfluxfn.dto.CommentWrapper.CommentViewWrapper;
 import com.realworld.webfluxfn.dto.CommentWrapper.CreateCommentRequestWrapper;
+import com.realworld.webfluxfn.dto.view.ArticleView;
 import com.realworld.webfluxfn.dto.view.MultipleArticlesView;
 import com.realworld.webfluxfn.dto.view.MultipleCommentsView;
 import com.realworld.webfluxfn.dto.view.TagListView;
+import com.realworld.webfluxfn.persistence.repository.ArticleCursor;
 import com.realworld.webfluxfn.service.article.ArticleService;
 import com.realworld.webfluxfn.service.user.UserSessionProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.Optional;
 
 @Component
@@ -26,8 +34,11 @@ public class ArticleHandler {
 
     private final ArticleService articleService;
     private final UserSessionProvider userSessionProvider;
+    private final PageParameters pageParameters;
 
     private static final String PATH_VARIABLE_ARTICLE_SLUG = "slug";
+    private static final String ARTICLE_EVENT_NAME = "article";
+    private static final Duration STREAM_HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
 
     public Mono<ServerResponse> createArticle(final ServerRequest req) {
         final Mono<CreateArticleRequestWrapper> in = req.bodyToMono(CreateArticleRequestWrapper.class);
@@ -37,27 +48,76 @@ public class ArticleHandler {
     }
 
     public Mono<ServerResponse> getArticles(final ServerRequest req) {
-        final int offset = Integer.parseInt(req.queryParam("offset").orElse("0"));
-        final int limit = Integer.parseInt(req.queryParam("limit").orElse("20"));
+        final int offset = pageParameters.offset(req);
+        final int limit = pageParameters.limit(req);
         final String tag = req.queryParam("tag").orElse(null);
         final String favoritedByUser = req.queryParam("favorited").orElse(null);
         final String author = req.queryParam("author").orElse(null);
+        final ArticleCursor cursor = req.queryParam("cursor").map(ArticleCursor::decode).orElse(null);
         return ServerResponse.ok().body( userSessionProvider.getCurrentUserOrEmpty()
                 .flatMap(currentUser -> articleService.findArticles(
-                        tag, author, favoritedByUser, offset, limit, Optional.of(currentUser)))
+                        tag, author, favoritedByUser, offset, limit, cursor, Optional.of(currentUser)))
                 .switchIfEmpty(Mono.defer(() -> articleService.findArticles(
-                        tag, author, favoritedByUser, offset, limit, Optional.empty()))),
+                        tag, author, favoritedByUser, offset, limit, cursor, Optional.empty()))),
                 MultipleArticlesView.class);
     }
 
+    /**
+     * The variant of {@link #getArticles} for {@code application/x-ndjson}, writing each article as soon as it is mapped.
+     * Without the whole page, there is neither the count of the articles nor the cursor of the next page.
+     */
+    public Mono<ServerResponse> streamArticles(final ServerRequest req) {
+        final int offset = pageParameters.offset(req);
+        final int limit = pageParameters.limit(req);
+        final String tag = req.queryParam("tag").orElse(null);
+        final String favoritedByUser = req.queryParam("favorited").orElse(null);
+        final String author = req.queryParam("author").orElse(null);
+        final ArticleCursor cursor = req.queryParam("cursor").map(ArticleCursor::decode).orElse(null);
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(userSessionProvider.getCurrentUserOrEmpty()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMapMany(currentUser -> articleService.streamArticles(
+                        tag, author, favoritedByUser, offset, limit, cursor, currentUser)),
+                ArticleView.class);
+    }
+
     public Mono<ServerResponse> feed(final ServerRequest req) {
-        final int offset = Integer.parseInt(req.queryParam("offset").orElse("0"));
-        final int limit = Integer.parseInt(req.queryParam("limit").orElse("20"));
+        final int offset = pageParameters.offset(req);
+        final int limit = pageParameters.limit(req);
+        final ArticleCursor cursor = req.queryParam("cursor").map(ArticleCursor::decode).orElse(null);
         return ServerResponse.ok().body(userSessionProvider.getCurrentUserOrEmpty()
-                .flatMap(currentUser -> articleService.feed(offset, limit, currentUser)),
+                .flatMap(currentUser -> articleService.feed(offset, limit, cursor, currentUser)),
                 MultipleArticlesView.class);
     }
 
+    /**
+     * The variant of {@link #feed} for {@code application/x-ndjson}, writing each article as soon as it is mapped.
+     */
+    public Mono<ServerResponse> streamFeedPage(final ServerRequest req) {
+        final int offset = pageParameters.offset(req);
+        final int limit = pageParameters.limit(req);
+        final ArticleCursor cursor = req.queryParam("cursor").map(ArticleCursor::decode).orElse(null);
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(userSessionProvider.getCurrentUserOrEmpty()
+                .flatMapMany(currentUser -> articleService.streamFeedPage(offset, limit, cursor, currentUser)),
+                ArticleView.class);
+    }
+
+    /**
+     * Streams the new articles of the feed as server-sent events, with a comment every heartbeat interval
+     * so that idle connections are not closed by proxies.
+     */
+    public Mono<ServerResponse> streamFeed(final ServerRequest req) {
+        return userSessionProvider.getCurrentUserOrEmpty()
+                .flatMap(currentUser -> ServerResponse.ok()
+                        .contentType(MediaType.TEXT_EVENT_STREAM)
+                        .body(Flux.merge(
+                                articleService.streamFeed(currentUser).map(ArticleHandler::toArticleEvent),
+                                Flux.interval(STREAM_HEARTBEAT_INTERVAL).map(tick -> ServerSentEvent.<ArticleViewWrapper>builder()
+                                        .comment("heartbeat").build())),
+                                new ParameterizedTypeReference<ServerSentEvent<ArticleViewWrapper>>() { }))
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.status(HttpStatus.UNAUTHORIZED).build()));
+    }
+
     public Mono<ServerResponse> getArticle(final ServerRequest req) {
         final String slug = req.pathVariable(PATH_VARIABLE_ARTICLE_SLUG);
         return ServerResponse.ok().body(userSessionProvider.getCurrentUserOrEmpty()
@@ -76,49 +136,64 @@ public class ArticleHandler {
 
     public Mono<ServerResponse> deleteArticle(final ServerRequest req) {
         final String slug = req.pathVariable(PATH_VARIABLE_ARTICLE_SLUG);
-        return ServerResponse.ok().body(userSessionProvider.getCurrentUserOrEmpty()
-                .flatMap(currentUser -> articleService.deleteArticle(slug, currentUser)), Void.class);
+        return ServerResponse.ok().body(userSessionProvider.getCurrentUserIdOrEmpty()
+                .flatMap(currentUserId -> articleService.deleteArticle(slug, currentUserId)), Void.class);
     }
 
 
     public Mono<ServerResponse> getComments(final ServerRequest req) {
         final String slug = req.pathVariable(PATH_VARIABLE_ARTICLE_SLUG);
+        final int offset = pageParameters.offset(req);
+        final int limit = pageParameters.limit(req);
         return ServerResponse.ok().body(userSessionProvider.getCurrentUserOrEmpty()
-                .flatMap(currentUser -> articleService.getComments(slug, Optional.of(currentUser)))
-                .switchIfEmpty(Mono.defer(() -> articleService.getComments(slug, Optional.empty()))), MultipleCommentsView.class);
+                .flatMap(currentUser -> articleService.getComments(slug, offset, limit, Optional.of(currentUser)))
+                .switchIfEmpty(Mono.defer(() -> articleService.getComments(slug, offset, limit, Optional.empty()))),
+                MultipleCommentsView.class);
     }
 
     public Mono<ServerResponse> addComment(final ServerRequest req) {
         final String slug = req.pathVariable(PATH_VARIABLE_ARTICLE_SLUG);
         final Mono<CreateCommentRequestWrapper> in = req.bodyToMono(CreateCommentRequestWrapper.class);
-        return ServerResponse.ok().body(userSessionProvider.getCurrentUserOrEmpty()
-                .flatMap(currentUser -> articleService.addComment(slug, in.map(e -> e.getContent()), currentUser))
+        return ServerResponse.ok().body(userSessionProvider.getCurrentUserIdOrEmpty()
+                .flatMap(currentUserId -> articleService.addComment(slug, in.map(e -> e.getContent()), currentUserId))
                 .map(CommentViewWrapper::new), CommentViewWrapper.class);
     }
 
     public Mono<ServerResponse> deleteComment(final ServerRequest req) {
         final String slug = req.pathVariable(PATH_VARIABLE_ARTICLE_SLUG);
         final String commentId = req.pathVariable("commentId");
-        return ServerResponse.ok().body(userSessionProvider.getCurrentUserOrEmpty()
-                .flatMap(currentUser -> articleService.deleteComment(commentId, slug, currentUser)), Void.class);
+        return ServerResponse.ok().body(userSessionProvider.getCurrentUserIdOrEmpty()
+                .flatMap(currentUserId -> articleService.deleteComment(commentId, slug, currentUserId)), Void.class);
     }
 
     public Mono<ServerResponse> favoriteArticle(final ServerRequest req) {
         final String slug = req.pathVariable(PATH_VARIABLE_ARTICLE_SLUG);
-        return ServerResponse.ok().body(userSessionProvider.getCurrentUserOrEmpty()
-                .flatMap(currentUser -> articleService.favoriteArticle(slug, currentUser))
+        return ServerResponse.ok().body(userSessionProvider.getCurrentUserIdOrEmpty()
+                .flatMap(currentUserId -> articleService.favoriteArticle(slug, currentUserId))
                 .map(ArticleViewWrapper::new), ArticleViewWrapper.class);
     }
 
 
     public Mono<ServerResponse> unfavoriteArticle(final ServerRequest req) {
         final String slug = req.pathVariable(PATH_VARIABLE_ARTICLE_SLUG);
-        return ServerResponse.ok().body(userSessionProvider.getCurrentUserOrEmpty()
-                .flatMap(currentUser -> articleService.unfavoriteArticle(slug, currentUser))
+        return ServerResponse.ok().body(userSessionProvider.getCurrentUserIdOrEmpty()
+                .flatMap(currentUserId -> articleService.unfavoriteArticle(slug, currentUserId))
                 .map(ArticleViewWrapper::new), ArticleViewWrapper.class);
     }
 
     public Mono<ServerResponse> getTags(final ServerRequest req) {
-        return ServerResponse.ok().body(articleService.getTags(), TagListView.class);
+        if (req.queryParam("limit").isPresent()) {
+            return ServerResponse.ok().body(articleService.getTags(pageParameters.limit(req)), TagListView.class);
+        }
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(articleService.getTagListJson());
+    }
+
+    private static ServerSentEvent<ArticleViewWrapper> toArticleEvent(final ArticleView article) {
+        return ServerSentEvent.builder(new ArticleViewWrapper(article))
+                .event(ARTICLE_EVENT_NAME)
+                .id(article.getSlug())
+                .build();
     }
 }
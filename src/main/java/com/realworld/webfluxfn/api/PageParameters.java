@@ -0,0 +1,67 @@
+package com.realworld.webfluxfn.api;
+
+import com.realworld.webfluxfn.exception.InvalidRequestException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+
+/**
+ * Reads the paging parameters of the list requests within bounds, so that a single request cannot load a whole collection.
+ * A limit above {@link PagingProperties#getMaxLimit()} is lowered to it and counted; an offset above
+ * {@link PagingProperties#getMaxOffset()} is rejected, since skipping entries costs as much as reading them.
+ */
+@Component
+public class PageParameters {
+    private static final String CLAMPED_COUNTER_NAME = "api.paging.clamped";
+    private static final String OFFSET_PARAMETER = "offset";
+    private static final String LIMIT_PARAMETER = "limit";
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final PagingProperties properties;
+    private final Counter clampedCounter;
+
+    public PageParameters(final PagingProperties properties, final MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.clampedCounter = meterRegistry.counter(CLAMPED_COUNTER_NAME);
+    }
+
+    public int offset(final ServerRequest req) {
+        final int offset = parse(req, OFFSET_PARAMETER, 0);
+        if (offset < 0) {
+            throw new InvalidRequestException("Offset", "must not be negative");
+        }
+        if (offset > properties.getMaxOffset()) {
+            throw new InvalidRequestException("Offset", "must not exceed " + properties.getMaxOffset() + ", use the cursor instead");
+        }
+        return offset;
+    }
+
+    public int limit(final ServerRequest req) {
+        final int limit = parse(req, LIMIT_PARAMETER, Math.min(DEFAULT_LIMIT, properties.getMaxLimit()));
+        if (limit < 1) {
+            throw new InvalidRequestException("Limit", "must be positive");
+        }
+        if (limit > properties.getMaxLimit()) {
+            clampedCounter.increment();
+            return properties.getMaxLimit();
+        }
+        return limit;
+    }
+
+    private static int parse(final ServerRequest req, final String name, final int defaultValue) {
+        return req.queryParam(name)
+                .map(value -> {
+                    try {
+                        return Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new InvalidRequestException(capitalize(name), "must be a number", e);
+                    }
+                })
+                .orElse(defaultValue);
+    }
+
+    private static String capitalize(final String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
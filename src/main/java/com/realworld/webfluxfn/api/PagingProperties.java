@@ -0,0 +1,20 @@
+package com.realworld.webfluxfn.api;
+
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@Value
+@ConfigurationProperties(prefix = "api.paging")
+@ConstructorBinding
+public class PagingProperties {
+    /**
+     * The largest page size; larger limits are lowered to it.
+     */
+    int maxLimit;
+
+    /**
+     * The largest offset; larger ones are rejected, deeper pages being read after a cursor.
+     */
+    int maxOffset;
+}
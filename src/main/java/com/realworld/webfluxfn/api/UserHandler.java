@@ -57,15 +57,15 @@ public class UserHandler {
 
     public Mono<ServerResponse> follow(final ServerRequest req) {
         final String profileUserName = req.pathVariable("username");
-        return ServerResponse.ok().body(userSessionProvider.getCurrentUserOrEmpty()
-                .flatMap(currentUser -> userService.follow(profileUserName, currentUser))
+        return ServerResponse.ok().body(userSessionProvider.getCurrentUserIdOrEmpty()
+                .flatMap(currentUserId -> userService.follow(profileUserName, currentUserId))
                 .map(ProfileWrapper::new), ProfileWrapper.class);
     }
 
     public Mono<ServerResponse> unfollow(final ServerRequest req) {
         final String profileUserName = req.pathVariable("username");
-        return ServerResponse.ok().body(userSessionProvider.getCurrentUserOrEmpty()
-                .flatMap(currentUser -> userService.unfollow(profileUserName, currentUser))
+        return ServerResponse.ok().body(userSessionProvider.getCurrentUserIdOrEmpty()
+                .flatMap(currentUserId -> userService.unfollow(profileUserName, currentUserId))
                 .map(ProfileWrapper::new), ProfileWrapper.class);
     }
 }
@@ -16,10 +16,11 @@ import lombok.experimental.FieldDefaults;
 public class CreateCommentRequest {
     private String body;
 
-    public Comment toComment(final String id, final String authorId) {
+    public Comment toComment(final String id, final String authorId, final String articleId) {
         return Comment.builder()
                 .id(id)
                 .authorId(authorId)
+                .articleId(articleId)
                 .body(body)
                 .build();
     }
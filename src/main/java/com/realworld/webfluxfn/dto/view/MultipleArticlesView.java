@@ -1,9 +1,11 @@
 package com.realworld.webfluxfn.dto.view;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.google.common.collect.ImmutableList;
 import lombok.*;
 import lombok.experimental.Accessors;
 import lombok.experimental.FieldDefaults;
+import org.springframework.lang.Nullable;
 
 import java.util.Collections;
 import java.util.List;
@@ -16,16 +18,38 @@ public class MultipleArticlesView {
 
     private List<ArticleView> articles = Collections.emptyList();
 
+    /**
+     * The total number of articles of the list, not only of this page.
+     */
     @Getter
     @Setter
     private int articlesCount;
 
+    /**
+     * The cursor to pass for the next page, absent on the last page.
+     */
+    @Getter
+    @Setter
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
     public static MultipleArticlesView makeInstance(final List<ArticleView> articles) {
         return new MultipleArticlesView()
                 .setArticles(articles)
                 .setArticlesCount(articles.size());
     }
 
+    public static MultipleArticlesView makeInstance(final List<ArticleView> articles, @Nullable final String nextCursor) {
+        return makeInstance(articles)
+                .setNextCursor(nextCursor);
+    }
+
+    public static MultipleArticlesView makeInstance(final List<ArticleView> articles, @Nullable final String nextCursor,
+                                                    final long articlesCount) {
+        return makeInstance(articles, nextCursor)
+                .setArticlesCount(Math.toIntExact(articlesCount));
+    }
+
     public List<ArticleView> getArticles() {
         return ImmutableList.copyOf(articles);
     }
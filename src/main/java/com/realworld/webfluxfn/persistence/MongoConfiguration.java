@@ -1,9 +1,18 @@
 package com.realworld.webfluxfn.persistence;
 
+import com.realworld.webfluxfn.persistence.repository.ArticleCountCacheProperties;
+import com.realworld.webfluxfn.persistence.repository.ArticleListProperties;
+import com.realworld.webfluxfn.persistence.repository.QueryPlanCheckProperties;
+import com.realworld.webfluxfn.persistence.repository.TagCacheProperties;
+import com.realworld.webfluxfn.persistence.repository.TimelineProperties;
+import com.realworld.webfluxfn.persistence.repository.UserCacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.EnableReactiveMongoAuditing;
 
 @Configuration
 @EnableReactiveMongoAuditing
+@EnableConfigurationProperties({UserCacheProperties.class, ArticleListProperties.class, ArticleCountCacheProperties.class,
+        TagCacheProperties.class, QueryPlanCheckProperties.class, TimelineProperties.class})
 public class MongoConfiguration {
 }
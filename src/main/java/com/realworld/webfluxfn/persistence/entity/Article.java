@@ -2,6 +2,9 @@ package com.realworld.webfluxfn.persistence.entity;
 
 import lombok.*;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.lang.Nullable;
 
@@ -9,19 +12,31 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Optional;
 
 import static java.util.Optional.ofNullable;
 
 @Document
+@CompoundIndexes({
+        @CompoundIndex(name = "createdAt_id", def = "{'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "authorId_createdAt_id", def = "{'authorId': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "tags_createdAt_id", def = "{'tags': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "favoritingUserIds_createdAt_id", def = "{'favoritingUserIds': 1, 'createdAt': -1, '_id': -1}")
+})
 @ToString
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Article {
 
+    public static final String ID_FIELD_NAME = "id";
     public static final String CREATED_AT_FIELD_NAME = "createdAt";
     public static final String FAVORITING_USER_IDS = "favoritingUserIds";
     public static final String AUTHOR_ID_FIELD_NAME = "authorId";
     public static final String TAGS_FIELD_NAME = "tags";
+    public static final String SLUG_FIELD_NAME = "slug";
+    public static final String TITLE_FIELD_NAME = "title";
+    public static final String DESCRIPTION_FIELD_NAME = "description";
+    public static final String BODY_FIELD_NAME = "body";
+    public static final String UPDATED_AT_FIELD_NAME = "updatedAt";
+    public static final String FAVORITES_COUNT_FIELD_NAME = "favoritesCount";
 
     @Getter
     @EqualsAndHashCode.Include
@@ -38,12 +53,16 @@ public class Article {
     private final List<String> tags;
 
     @Getter
-    private final List<Comment> comments;
+    private final List<String> favoritingUserIds;
 
+    /**
+     * Stored alongside {@link #favoritingUserIds} so that list queries do not need to load the whole array.
+     */
     @Getter
-    private final List<String> favoritingUserIds;
+    private int favoritesCount;
 
     @Getter
+    @Indexed(unique = true)
     private String slug;
 
     @Getter
@@ -70,8 +89,8 @@ public class Article {
             @Nullable final Instant updatedAt,
             final String authorId,
             @Nullable final List<String> tags,
-            @Nullable final List<Comment> comments,
-            @Nullable final List<String> favoritingUserIds
+            @Nullable final List<String> favoritingUserIds,
+            @Nullable final Integer favoritesCount
     ) {
         this.id = id;
         this.title = title;
@@ -82,21 +101,8 @@ public class Article {
         this.updatedAt = ofNullable(updatedAt).orElse(createdAt);
         this.authorId = authorId;
         this.tags = ofNullable(tags).orElse(new ArrayList<>());
-        this.comments = ofNullable(comments).orElse(new ArrayList<>());
         this.favoritingUserIds = ofNullable(favoritingUserIds).orElse(new ArrayList<>());
-    }
-
-    public int getFavoritesCount() {
-        return favoritingUserIds == null ? 0 : favoritingUserIds.size();
-    }
-    public Article addComment(final Comment comment) {
-        this.comments.add(comment);
-        return this;
-    }
-
-    public Article deleteComment(final Comment comment) {
-        this.comments.remove(comment);
-        return this;
+        this.favoritesCount = ofNullable(favoritesCount).orElse(this.favoritingUserIds.size());
     }
 
     public void setTitle(final String title) {
@@ -104,12 +110,6 @@ public class Article {
         this.slug = toSlug(title);
     }
 
-    public Optional<Comment> getCommentById(final String commentId) {
-        return comments.stream()
-                .filter(comment -> commentId.equals(comment.getId()))
-                .findFirst();
-    }
-
     public boolean hasTag(final String tag) {
         return tags.contains(tag);
     }
@@ -122,23 +122,7 @@ public class Article {
         return isAuthor(author.getId());
     }
 
-    public boolean favoriteByUser(final User user) {
-        if (favoritingUserIds.contains(user.getId())) {
-            return false;
-        }
-        favoritingUserIds.add(user.getId());
-        return true;
-    }
-
-    public boolean unfavoriteByUser(final User user) {
-        if (! favoritingUserIds.contains(user.getId())) {
-            return false;
-        }
-        favoritingUserIds.remove(user.getId());
-        return true;
-    }
-
-    private static String toSlug(final String title) {
+    public static String toSlug(final String title) {
         return title.toLowerCase(Locale.US).replaceAll("[&|\\uFE30-\\uFFA0’”\\s?,.]+", "-");
     }
 }
\ No newline at end of file
@@ -3,15 +3,22 @@ package com.realworld.webfluxfn.persistence.entity;
 import lombok.*;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 
 import static java.util.Optional.ofNullable;
 
+@Document
+@CompoundIndex(name = "articleId_createdAt", def = "{'articleId': 1, 'createdAt': 1}")
 @ToString
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Comment {
 
+    public static final String ARTICLE_ID_FIELD_NAME = "articleId";
+    public static final String CREATED_AT_FIELD_NAME = "createdAt";
+
     @Id
     @EqualsAndHashCode.Include
     @Getter
@@ -25,6 +32,9 @@ public class Comment {
     @Setter
     private String authorId;
 
+    @Getter
+    private final String articleId;
+
     @Getter
     private final Instant createdAt;
 
@@ -32,16 +42,22 @@ public class Comment {
     @LastModifiedDate
     private final Instant updatedAt;
 
-    @Builder
-    public Comment(final String id, final String body, final String authorId, final Instant createdAt, final Instant updatedAt) {
+    @Builder(toBuilder = true)
+    public Comment(final String id, final String body, final String authorId, final String articleId,
+                   final Instant createdAt, final Instant updatedAt) {
         this.id = id;
         this.body = body;
         this.authorId = authorId;
+        this.articleId = articleId;
         this.createdAt = ofNullable(createdAt).orElse(Instant.now());
         this.updatedAt = ofNullable(updatedAt).orElse(this.createdAt);
     }
 
+    public boolean isAuthor(final String userId) {
+        return authorId.equals(userId);
+    }
+
     public boolean isAuthor(final User user) {
-        return authorId.equals(user.getId());
+        return isAuthor(user.getId());
     }
 }
@@ -0,0 +1,36 @@
+package com.realworld.webfluxfn.persistence.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * The follower side of {@link User#getFollowingIds()}: one document per follow, indexed by the followed user,
+ * so that the followers of a user are found without scanning every following set.
+ */
+@Document
+@CompoundIndex(name = "followeeId_followerId", def = "{'followeeId': 1, 'followerId': 1}")
+@Builder
+@Data
+@AllArgsConstructor
+public class Follow {
+    public static final String FOLLOWER_ID_FIELD_NAME = "followerId";
+    public static final String FOLLOWEE_ID_FIELD_NAME = "followeeId";
+
+    /**
+     * Derived from both users, so that saving the same follow twice keeps a single document.
+     */
+    @Id
+    private final String id;
+
+    private final String followerId;
+
+    private final String followeeId;
+
+    public static Follow makeInstance(final String followerId, final String followeeId) {
+        return new Follow(followerId + ":" + followeeId, followerId, followeeId);
+    }
+}
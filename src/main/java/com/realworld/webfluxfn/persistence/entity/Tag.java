@@ -4,21 +4,31 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document
+@CompoundIndex(name = "articleCount_tagName", def = "{'articleCount': -1, 'tagName': 1}")
 @Builder
 @Data
 @AllArgsConstructor
 public class Tag {
+    public static final String TAG_NAME_FIELD_NAME = "tagName";
+    public static final String ARTICLE_COUNT_FIELD_NAME = "articleCount";
+
     @Id
     private String id;
 
     @Indexed(unique = true)
     private final String tagName;
 
+    /**
+     * The number of articles tagged with the tag, kept up to date as articles are created and deleted.
+     */
+    private int articleCount;
+
     public static Tag makeInstance(final String tag) {
-        return new Tag(null, tag);
+        return new Tag(null, tag, 0);
     }
 }
@@ -0,0 +1,54 @@
+package com.realworld.webfluxfn.persistence.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * An article in the feed of one of the followers of its author, written when the article is created,
+ * so that reading a feed is a range scan of the follower's entries instead of a query over all the followed authors.
+ */
+@Document
+@CompoundIndexes({
+        @CompoundIndex(name = "ownerId_createdAt_articleId", def = "{'ownerId': 1, 'createdAt': -1, 'articleId': -1}"),
+        @CompoundIndex(name = "ownerId_authorId", def = "{'ownerId': 1, 'authorId': 1}")
+})
+@Builder
+@Data
+@AllArgsConstructor
+public class TimelineEntry {
+    public static final String OWNER_ID_FIELD_NAME = "ownerId";
+    public static final String ARTICLE_ID_FIELD_NAME = "articleId";
+    public static final String AUTHOR_ID_FIELD_NAME = "authorId";
+    public static final String CREATED_AT_FIELD_NAME = "createdAt";
+
+    /**
+     * Derived from the owner and the article, so that writing the same entry twice keeps a single document.
+     */
+    @Id
+    private final String id;
+
+    private final String ownerId;
+
+    @Indexed
+    private final String articleId;
+
+    private final String authorId;
+
+    /**
+     * The creation time of the article, which orders the timeline like {@link Article#getCreatedAt()} orders the articles.
+     */
+    private final Instant createdAt;
+
+    public static TimelineEntry makeInstance(final String ownerId, final Article article) {
+        return new TimelineEntry(ownerId + ":" + article.getId(), ownerId, article.getId(), article.getAuthorId(),
+                article.getCreatedAt());
+    }
+}
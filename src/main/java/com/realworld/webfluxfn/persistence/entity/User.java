@@ -1,12 +1,14 @@
 package com.realworld.webfluxfn.persistence.entity;
 
 import lombok.*;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.lang.Nullable;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import static java.util.Optional.ofNullable;
 
@@ -17,19 +19,41 @@ import static java.util.Optional.ofNullable;
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class User {
 
+    public static final String ID_FIELD_NAME = "id";
+    public static final String USERNAME_FIELD_NAME = "username";
+    public static final String EMAIL_FIELD_NAME = "email";
+    public static final String ENCODED_PASSWORD_FIELD_NAME = "encodedPassword";
+    public static final String FOLLOWING_IDS_FIELD_NAME = "followingIds";
+    public static final String FOLLOWERS_COUNT_FIELD_NAME = "followersCount";
+    public static final String BIO_FIELD_NAME = "bio";
+    public static final String IMAGE_FIELD_NAME = "image";
+
     @EqualsAndHashCode.Include
     @Setter(AccessLevel.NONE)
     private final String id;
 
+    /**
+     * Only changed by the atomic updates of {@link com.realworld.webfluxfn.persistence.repository.UserManualRepository}:
+     * a user is saved whole only when it is created, so that the follows made meanwhile are never overwritten.
+     */
     @Singular
     @Getter(AccessLevel.NONE)
     @Setter(AccessLevel.NONE)
-    private final List<String> followingIds;
+    private final Set<String> followingIds;
+
+    /**
+     * The number of users following the user, only changed atomically for the same reason as {@link #followingIds}.
+     */
+    @Setter(AccessLevel.NONE)
+    @Indexed
+    private final long followersCount;
 
+    @Indexed(unique = true)
     private String username;
 
     private String encodedPassword;
 
+    @Indexed(unique = true)
     private String email;
 
     @Nullable
@@ -40,24 +64,26 @@ public class User {
 
     @Builder(toBuilder = true)
     public User(final String id,
-                @Nullable final List<String> followingIds,
+                @Nullable final Collection<String> followingIds,
                 final String username,
                 final String encodedPassword,
                 final String email,
                 @Nullable final String bio,
-                @Nullable final String image
+                @Nullable final String image,
+                final long followersCount
     ) {
         this.id = id;
-        this.followingIds = ofNullable(followingIds).orElse(new ArrayList<>());
+        this.followingIds = ofNullable(followingIds).<Set<String>>map(LinkedHashSet::new).orElseGet(LinkedHashSet::new);
         this.username = username;
         this.encodedPassword = encodedPassword;
         this.email = email;
         this.bio = bio;
         this.image = image;
+        this.followersCount = followersCount;
     }
 
-    public List<String> getFollowingIds() {
-        return Collections.unmodifiableList(followingIds);
+    public Set<String> getFollowingIds() {
+        return Collections.unmodifiableSet(followingIds);
     }
 
     public void follow(final String userId) {
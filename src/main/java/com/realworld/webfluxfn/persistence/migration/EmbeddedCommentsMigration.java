@@ -0,0 +1,72 @@
+package com.realworld.webfluxfn.persistence.migration;
+
+import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.entity.Comment;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Moves the comments that used to be embedded in the article documents into the comment collection.
+ * The comments keep their ids, so an interrupted migration can run again without duplicating them;
+ * the embedded list is removed only once all its comments are saved.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmbeddedCommentsMigration implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final String EMBEDDED_COMMENTS_FIELD_NAME = "comments";
+    private static final String ID_FIELD_NAME = "_id";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public void onApplicationEvent(final ContextRefreshedEvent event) {
+        final Long migrated = migrate().block();
+        if (migrated != null && migrated > 0) {
+            log.info("embedded comments are moved out of {} articles", migrated);
+        }
+    }
+
+    /**
+     * @return the number of migrated articles
+     */
+    public Mono<Long> migrate() {
+        final String collectionName = mongoTemplate.getCollectionName(Article.class);
+        final Query query = new Query(where(EMBEDDED_COMMENTS_FIELD_NAME).exists(true));
+        query.fields().include(EMBEDDED_COMMENTS_FIELD_NAME);
+        return mongoTemplate.find(query, Document.class, collectionName)
+                .concatMap(article -> Flux.fromIterable(embeddedCommentsOf(article))
+                        .map(comment -> toComment(comment, article.get(ID_FIELD_NAME).toString()))
+                        .concatMap(mongoTemplate::save)
+                        .then(mongoTemplate.updateFirst(
+                                new Query(where(ID_FIELD_NAME).is(article.get(ID_FIELD_NAME))),
+                                new Update().unset(EMBEDDED_COMMENTS_FIELD_NAME),
+                                collectionName)))
+                .count();
+    }
+
+    private Comment toComment(final Document embeddedComment, final String articleId) {
+        return mongoTemplate.getConverter().read(Comment.class, embeddedComment).toBuilder()
+                .articleId(articleId)
+                .build();
+    }
+
+    private static List<Document> embeddedCommentsOf(final Document article) {
+        final List<Document> comments = article.getList(EMBEDDED_COMMENTS_FIELD_NAME, Document.class);
+        return comments == null ? List.of() : comments;
+    }
+}
@@ -0,0 +1,64 @@
+package com.realworld.webfluxfn.persistence.migration;
+
+import com.realworld.webfluxfn.persistence.entity.Article;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Stores the favorites count of the articles saved before it was kept alongside their favoriting users.
+ * Only the articles without the count are touched, so running it again is a no-op.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FavoritesCountBackfill implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final String ID_FIELD_NAME = "_id";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public void onApplicationEvent(final ContextRefreshedEvent event) {
+        final Long backfilled = backfill().block();
+        if (backfilled != null && backfilled > 0) {
+            log.info("favorites count is backfilled on {} articles", backfilled);
+        }
+    }
+
+    /**
+     * @return the number of backfilled articles
+     */
+    public Mono<Long> backfill() {
+        final String collectionName = mongoTemplate.getCollectionName(Article.class);
+        final Query query = new Query(withoutFavoritesCount());
+        query.fields().include(Article.FAVORITING_USER_IDS);
+        return mongoTemplate.find(query, Document.class, collectionName)
+                .concatMap(article -> mongoTemplate.updateFirst(
+                        new Query(where(ID_FIELD_NAME).is(article.get(ID_FIELD_NAME)).andOperator(withoutFavoritesCount())),
+                        Update.update(Article.FAVORITES_COUNT_FIELD_NAME, favoritesCountOf(article)),
+                        collectionName))
+                .count();
+    }
+
+    private static Criteria withoutFavoritesCount() {
+        return where(Article.FAVORITES_COUNT_FIELD_NAME).exists(false);
+    }
+
+    private static int favoritesCountOf(final Document article) {
+        final List<?> favoritingUserIds = article.get(Article.FAVORITING_USER_IDS, List.class);
+        return favoritingUserIds == null ? 0 : favoritingUserIds.size();
+    }
+}
@@ -0,0 +1,79 @@
+package com.realworld.webfluxfn.persistence.migration;
+
+import com.realworld.webfluxfn.persistence.entity.Follow;
+import com.realworld.webfluxfn.persistence.entity.User;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Indexes the follows of the users whose following set was stored before the {@link Follow} collection existed,
+ * then stores the followers count of the followed users.
+ * It only runs while the follow collection is empty, so running it again is a no-op.
+ */
+@Component
+@Order(FollowIndexBackfill.ORDER)
+@RequiredArgsConstructor
+@Slf4j
+public class FollowIndexBackfill implements ApplicationListener<ContextRefreshedEvent> {
+    /**
+     * The order of this listener, before the backfills that read the followers counts it stores.
+     */
+    public static final int ORDER = 0;
+
+    private static final String ID_FIELD_NAME = "_id";
+    private static final String COUNT_FIELD_NAME = "count";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public void onApplicationEvent(final ContextRefreshedEvent event) {
+        final Long backfilled = backfill().block();
+        if (backfilled != null && backfilled > 0) {
+            log.info("follow index is backfilled with {} follows", backfilled);
+        }
+    }
+
+    /**
+     * @return the number of indexed follows
+     */
+    public Mono<Long> backfill() {
+        return mongoTemplate.exists(new Query(), Follow.class)
+                .flatMap(indexed -> indexed
+                        ? Mono.just(0L)
+                        : indexFollows().flatMap(follows -> countFollowers().thenReturn(follows)));
+    }
+
+    private Mono<Long> indexFollows() {
+        final Query query = new Query(where(User.FOLLOWING_IDS_FIELD_NAME + ".0").exists(true));
+        query.fields().include(User.FOLLOWING_IDS_FIELD_NAME);
+        return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(User.class))
+                .concatMap(user -> Flux.fromIterable(user.getList(User.FOLLOWING_IDS_FIELD_NAME, String.class))
+                        .map(followeeId -> Follow.makeInstance(user.getString(ID_FIELD_NAME), followeeId)))
+                .concatMap(mongoTemplate::save)
+                .count();
+    }
+
+    private Mono<Void> countFollowers() {
+        final Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.group(Follow.FOLLOWEE_ID_FIELD_NAME).count().as(COUNT_FIELD_NAME));
+        return mongoTemplate.aggregate(aggregation, Follow.class, Document.class)
+                .concatMap(followers -> mongoTemplate.updateFirst(
+                        new Query(where(User.ID_FIELD_NAME).is(followers.getString(ID_FIELD_NAME))),
+                        Update.update(User.FOLLOWERS_COUNT_FIELD_NAME, followers.getInteger(COUNT_FIELD_NAME)),
+                        User.class))
+                .then();
+    }
+}
@@ -0,0 +1,60 @@
+package com.realworld.webfluxfn.persistence.migration;
+
+import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.entity.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Stores the article count of the tags saved before it was kept alongside their name.
+ * Only the tags without the count are touched, so running it again is a no-op.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TagArticleCountBackfill implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final String ID_FIELD_NAME = "_id";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public void onApplicationEvent(final ContextRefreshedEvent event) {
+        final Long backfilled = backfill().block();
+        if (backfilled != null && backfilled > 0) {
+            log.info("article count is backfilled on {} tags", backfilled);
+        }
+    }
+
+    /**
+     * @return the number of backfilled tags
+     */
+    public Mono<Long> backfill() {
+        final String collectionName = mongoTemplate.getCollectionName(Tag.class);
+        final Query query = new Query(withoutArticleCount());
+        query.fields().include(Tag.TAG_NAME_FIELD_NAME);
+        return mongoTemplate.find(query, Document.class, collectionName)
+                .concatMap(tag -> mongoTemplate.count(
+                                new Query(where(Article.TAGS_FIELD_NAME).is(tag.getString(Tag.TAG_NAME_FIELD_NAME))), Article.class)
+                        .flatMap(articleCount -> mongoTemplate.updateFirst(
+                                new Query(where(ID_FIELD_NAME).is(tag.get(ID_FIELD_NAME)).andOperator(withoutArticleCount())),
+                                Update.update(Tag.ARTICLE_COUNT_FIELD_NAME, articleCount),
+                                collectionName)))
+                .count();
+    }
+
+    private static Criteria withoutArticleCount() {
+        return where(Tag.ARTICLE_COUNT_FIELD_NAME).exists(false);
+    }
+}
@@ -0,0 +1,73 @@
+package com.realworld.webfluxfn.persistence.migration;
+
+import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.entity.TimelineEntry;
+import com.realworld.webfluxfn.persistence.entity.User;
+import com.realworld.webfluxfn.persistence.repository.TimelineProperties;
+import com.realworld.webfluxfn.persistence.repository.TimelineRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Writes the timelines of the users who followed authors before the timelines existed, with the newest articles
+ * of each followed author that is not pulled, as a new follow does.
+ * It only runs while the timeline collection is empty and there are articles, so running it again is a no-op.
+ * It runs after {@link FollowIndexBackfill}, since the pulled authors are read from the followers counts stored there.
+ */
+@Component
+@Order(FollowIndexBackfill.ORDER + 1)
+@RequiredArgsConstructor
+@Slf4j
+public class TimelineBackfill implements ApplicationListener<ContextRefreshedEvent> {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TimelineRepository timelineRepository;
+    private final TimelineProperties properties;
+
+    @Override
+    public void onApplicationEvent(final ContextRefreshedEvent event) {
+        final Long backfilled = backfill().block();
+        if (backfilled != null && backfilled > 0) {
+            log.info("timelines are backfilled with {} entries", backfilled);
+        }
+    }
+
+    /**
+     * @return the number of written timeline entries
+     */
+    public Mono<Long> backfill() {
+        return Mono.zip(mongoTemplate.exists(new Query(), TimelineEntry.class), mongoTemplate.exists(new Query(), Article.class))
+                .flatMap(exists -> exists.getT1() || !exists.getT2()
+                        ? Mono.just(0L)
+                        : findPulledAuthorIds().flatMap(this::writeTimelines));
+    }
+
+    private Mono<Set<String>> findPulledAuthorIds() {
+        return mongoTemplate
+                .find(new Query(where(User.FOLLOWERS_COUNT_FIELD_NAME).gte(properties.getFanOutMaxFollowers())), User.class)
+                .map(User::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private Mono<Long> writeTimelines(final Set<String> pulledAuthorIds) {
+        return mongoTemplate.find(new Query(where(User.FOLLOWING_IDS_FIELD_NAME + ".0").exists(true)), User.class)
+                .concatMap(user -> Flux.fromIterable(user.getFollowingIds())
+                        .filter(followeeId -> !pulledAuthorIds.contains(followeeId))
+                        .concatMap(followeeId -> timelineRepository.addAuthorArticles(user.getId(), followeeId,
+                                properties.getFollowBackfillSize())))
+                .reduce(0L, Long::sum);
+    }
+}
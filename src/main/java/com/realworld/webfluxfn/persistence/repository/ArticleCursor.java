@@ -0,0 +1,74 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.realworld.webfluxfn.exception.InvalidRequestException;
+import com.realworld.webfluxfn.persistence.entity.Article;
+import lombok.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * The position of an article in {@link ArticleRepository#NEWEST_ARTICLE_SORT}, handed to clients as an opaque string.
+ * Listing the articles after a cursor seeks the position in the index instead of skipping all the articles before it,
+ * so every page costs the same as the first one.
+ */
+@Value
+public class ArticleCursor {
+    private static final String SEPARATOR = ":";
+
+    Instant createdAt;
+    String id;
+
+    public static ArticleCursor of(final Article article) {
+        return new ArticleCursor(article.getCreatedAt(), article.getId());
+    }
+
+    /**
+     * @return the cursor after the last article of the page, or null if the page is the last one
+     */
+    @Nullable
+    public static String encodeNext(final List<Article> page, final int limit) {
+        if (page.isEmpty() || page.size() < limit) {
+            return null;
+        }
+        return of(page.get(page.size() - 1)).encode();
+    }
+
+    public static ArticleCursor decode(final String encoded) {
+        try {
+            final String decoded = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            final int separatorIndex = decoded.indexOf(SEPARATOR);
+            final long createdAtMillis = Long.parseLong(decoded.substring(0, separatorIndex));
+            return new ArticleCursor(Instant.ofEpochMilli(createdAtMillis), decoded.substring(separatorIndex + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidRequestException("Cursor", "invalid", e);
+        }
+    }
+
+    public String encode() {
+        final String decoded = createdAt.toEpochMilli() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The range on {@code createdAt} bounds the index scan; the id only breaks the ties at the bound.
+     */
+    /* default */ Criteria after() {
+        return after(Article.CREATED_AT_FIELD_NAME, Article.ID_FIELD_NAME);
+    }
+
+    /**
+     * The same position in a collection ordered like the articles, whose fields hold the creation time and id of an article.
+     */
+    /* default */ Criteria after(final String createdAtFieldName, final String idFieldName) {
+        return where(createdAtFieldName).lte(createdAt).orOperator(
+                where(createdAtFieldName).lt(createdAt),
+                where(idFieldName).lt(id));
+    }
+}
@@ -0,0 +1,12 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@Value
+@ConfigurationProperties(prefix = "article.list")
+@ConstructorBinding
+public class ArticleListProperties {
+    ArticleProjection projection;
+}
@@ -1,33 +1,94 @@
 package com.realworld.webfluxfn.persistence.repository;
 
 import com.realworld.webfluxfn.persistence.entity.Article;
-import com.realworld.webfluxfn.dto.request.FindArticlesRequest;
 import com.realworld.webfluxfn.persistence.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.lang.Nullable;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.Collection;
+
+import static com.realworld.webfluxfn.persistence.repository.RepositoryQueries.articlesFilteredByQuery;
+import static com.realworld.webfluxfn.persistence.repository.RepositoryQueries.authorIdIn;
+import static com.realworld.webfluxfn.persistence.repository.RepositoryQueries.newestArticlesByAuthorIdsQuery;
+import static com.realworld.webfluxfn.persistence.repository.RepositoryQueries.newestArticlesFilteredByQuery;
+import static com.realworld.webfluxfn.persistence.repository.RepositoryQueries.slugEquals;
 import static java.util.Optional.ofNullable;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 public interface ArticleManualRepository {
+    /**
+     * Finds a page of articles for listing, loading only the fields of the given projection.
+     * The page starts after the cursor if there is one, and the offset is skipped from there.
+     */
     Flux<Article> findNewestArticlesFilteredBy(@Nullable String tag,
                                                @Nullable String authorId,
                                                @Nullable User favoritingUser,
+                                               @Nullable String viewerId,
+                                               ArticleProjection projection,
+                                               @Nullable ArticleCursor cursor,
                                                int limit,
                                                int offset);
 
-    default Flux<Article> findNewestArticlesFilteredBy(final FindArticlesRequest request) {
-        return findNewestArticlesFilteredBy(request.getTag(),
-                request.getAuthorId(),
-                request.getFavoritedBy(),
-                request.getLimit(),
-                request.getOffset());
-    }
+    /**
+     * Finds a page of the articles of the given authors for listing, loading only the fields of the given projection.
+     * The page starts after the cursor if there is one, and the offset is skipped from there.
+     */
+    Flux<Article> findNewestArticlesByAuthorIds(Collection<String> authorIds,
+                                                @Nullable String viewerId,
+                                                ArticleProjection projection,
+                                                @Nullable ArticleCursor cursor,
+                                                int offset,
+                                                int limit);
+
+    /**
+     * Finds the articles with the given ids, in no particular order, loading only the fields of the given projection.
+     */
+    Flux<Article> findArticlesByIds(Collection<String> ids, @Nullable String viewerId, ArticleProjection projection);
+
+    /**
+     * Counts all the articles matching the filters, regardless of paging.
+     * Without any filter the count is estimated from the collection metadata instead of scanning an index.
+     */
+    Mono<Long> countArticlesFilteredBy(@Nullable String tag, @Nullable String authorId, @Nullable User favoritingUser);
+
+    /**
+     * Counts all the articles of the given authors, regardless of paging.
+     */
+    Mono<Long> countArticlesByAuthorIds(Collection<String> authorIds);
+
+    /**
+     * Atomically adds the user to the article's favoriting users, incrementing the favorites count
+     * only if the user was not one of them yet.
+     * @return the updated article with the favoriting users narrowed down to the user, or empty if there is no article with the slug
+     */
+    Mono<Article> addFavoritingUser(String slug, String userId);
+
+    /**
+     * Atomically removes the user from the article's favoriting users, decrementing the favorites count
+     * only if the user was one of them.
+     * @return the updated article with the favoriting users narrowed down to the user, or empty if there is no article with the slug
+     */
+    Mono<Article> removeFavoritingUser(String slug, String userId);
+
+    /**
+     * Atomically sets the given title, description and body of the article, if the user is its author,
+     * leaving the favoriting users untouched. The slug follows the title.
+     * @return the updated article, or empty if the user is not the author of an article with the slug
+     */
+    Mono<Article> updateContent(String slug,
+                                String authorId,
+                                @Nullable String title,
+                                @Nullable String description,
+                                @Nullable String body);
 }
 
 @RequiredArgsConstructor
@@ -40,30 +101,101 @@ class ArticleManualRepositoryImpl implements ArticleManualRepository {
     public Flux<Article> findNewestArticlesFilteredBy(@Nullable final String tag,
                                                       @Nullable final String authorId,
                                                       @Nullable final User favoritingUser,
+                                                      @Nullable final String viewerId,
+                                                      final ArticleProjection projection,
+                                                      @Nullable final ArticleCursor cursor,
                                                       final int limit,
                                                       final int offset) {
-        final Query query = new Query()
-                .skip(offset)
-                .limit(limit)
-                .with(ArticleRepository.NEWEST_ARTICLE_SORT);
-        ofNullable(favoritingUser)
-                .ifPresent(user -> query.addCriteria(favoritedByUser(user)));
-        ofNullable(tag)
-                .ifPresent(it -> query.addCriteria(tagsContains(it)));
-        ofNullable(authorId)
-                .ifPresent(it -> query.addCriteria(authorIdEquals(it)));
+        final Query query = newestArticlesFilteredByQuery(tag, authorId, favoritingUser, cursor, limit, offset);
+        projection.applyTo(query, viewerId);
         return mongoTemplate.find(query, Article.class);
     }
 
-    private static Criteria authorIdEquals(final String it) {
-        return where(Article.AUTHOR_ID_FIELD_NAME).is(it);
+    @Override
+    public Flux<Article> findNewestArticlesByAuthorIds(final Collection<String> authorIds,
+                                                       @Nullable final String viewerId,
+                                                       final ArticleProjection projection,
+                                                       @Nullable final ArticleCursor cursor,
+                                                       final int offset,
+                                                       final int limit) {
+        final Query query = newestArticlesByAuthorIdsQuery(authorIds, cursor, offset, limit);
+        projection.applyTo(query, viewerId);
+        return mongoTemplate.find(query, Article.class);
+    }
+
+    @Override
+    public Flux<Article> findArticlesByIds(final Collection<String> ids, @Nullable final String viewerId,
+                                           final ArticleProjection projection) {
+        final Query query = new Query(where(Article.ID_FIELD_NAME).in(ids));
+        projection.applyTo(query, viewerId);
+        return mongoTemplate.find(query, Article.class);
     }
 
-    private static Criteria tagsContains(final String it) {
-        return where(Article.TAGS_FIELD_NAME).all(it);
+    @Override
+    public Mono<Long> countArticlesFilteredBy(@Nullable final String tag,
+                                              @Nullable final String authorId,
+                                              @Nullable final User favoritingUser) {
+        final Query query = articlesFilteredByQuery(tag, authorId, favoritingUser);
+        if (query.getQueryObject().isEmpty()) {
+            return mongoTemplate.estimatedCount(Article.class);
+        }
+        return mongoTemplate.count(query, Article.class);
+    }
+
+    @Override
+    public Mono<Long> countArticlesByAuthorIds(final Collection<String> authorIds) {
+        return mongoTemplate.count(new Query(authorIdIn(authorIds)), Article.class);
+    }
+
+    @Override
+    public Mono<Article> addFavoritingUser(final String slug, final String userId) {
+        final Criteria notFavoritedYet = slugEquals(slug).and(Article.FAVORITING_USER_IDS).ne(userId);
+        final Update update = new Update()
+                .addToSet(Article.FAVORITING_USER_IDS, userId)
+                .inc(Article.FAVORITES_COUNT_FIELD_NAME, 1);
+        return updateOrFindBySlug(slug, userId, notFavoritedYet, update);
+    }
+
+    @Override
+    public Mono<Article> removeFavoritingUser(final String slug, final String userId) {
+        final Criteria favorited = slugEquals(slug).and(Article.FAVORITING_USER_IDS).is(userId);
+        final Update update = new Update()
+                .pull(Article.FAVORITING_USER_IDS, userId)
+                .inc(Article.FAVORITES_COUNT_FIELD_NAME, -1);
+        return updateOrFindBySlug(slug, userId, favorited, update);
+    }
+
+    @Override
+    public Mono<Article> updateContent(final String slug,
+                                       final String authorId,
+                                       @Nullable final String title,
+                                       @Nullable final String description,
+                                       @Nullable final String body) {
+        final Query query = new Query(slugEquals(slug).and(Article.AUTHOR_ID_FIELD_NAME).is(authorId));
+        ArticleProjection.FULL.applyTo(query, authorId);
+        final Update update = new Update().set(Article.UPDATED_AT_FIELD_NAME, Instant.now());
+        ofNullable(title)
+                .ifPresent(it -> update.set(Article.TITLE_FIELD_NAME, it).set(Article.SLUG_FIELD_NAME, Article.toSlug(it)));
+        ofNullable(description)
+                .ifPresent(it -> update.set(Article.DESCRIPTION_FIELD_NAME, it));
+        ofNullable(body)
+                .ifPresent(it -> update.set(Article.BODY_FIELD_NAME, it));
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Article.class);
     }
 
-    private static Criteria favoritedByUser(final User it) {
-        return where(Article.FAVORITING_USER_IDS).all(it.getId());
+    /**
+     * The criteria guards the update, so a repeated (un)favorite matches nothing and leaves the count untouched;
+     * the article is then read as it is. Either way the favoriting users are narrowed down to the acting user.
+     */
+    private Mono<Article> updateOrFindBySlug(final String slug, final String userId, final Criteria criteria,
+                                             final Update update) {
+        final Query query = new Query(criteria);
+        ArticleProjection.FULL.applyTo(query, userId);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Article.class)
+                .switchIfEmpty(Mono.defer(() -> {
+                    final Query bySlug = new Query(slugEquals(slug));
+                    ArticleProjection.FULL.applyTo(bySlug, userId);
+                    return mongoTemplate.findOne(bySlug, Article.class);
+                }));
     }
 }
@@ -0,0 +1,40 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.realworld.webfluxfn.persistence.entity.Article;
+import org.springframework.data.mongodb.core.query.Field;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * The fields loaded by the article list queries, which fetch only what the listed article views show.
+ * The favoriting users are narrowed down to the viewer alone, so that {@code favoritingUserIds} only tells
+ * whether the viewer favorited the article; use {@link Article#getFavoritesCount()} for the count.
+ */
+public enum ArticleProjection {
+    FULL,
+    /**
+     * Leaves out the article body, which is usually the largest field and is not needed to list articles.
+     */
+    SUMMARY;
+
+    /* default */ void applyTo(final Query query, @Nullable final String viewerId) {
+        final Field fields = query.fields().include(
+                Article.SLUG_FIELD_NAME,
+                Article.TITLE_FIELD_NAME,
+                Article.DESCRIPTION_FIELD_NAME,
+                Article.TAGS_FIELD_NAME,
+                Article.CREATED_AT_FIELD_NAME,
+                Article.UPDATED_AT_FIELD_NAME,
+                Article.AUTHOR_ID_FIELD_NAME,
+                Article.FAVORITES_COUNT_FIELD_NAME);
+        if (this == FULL) {
+            fields.include(Article.BODY_FIELD_NAME);
+        }
+        Optional.ofNullable(viewerId)
+                .ifPresent(it -> fields.elemMatch(Article.FAVORITING_USER_IDS, where("$eq").is(it)));
+    }
+}
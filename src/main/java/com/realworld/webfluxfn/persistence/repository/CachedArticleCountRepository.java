@@ -0,0 +1,59 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.realworld.webfluxfn.persistence.entity.User;
+import lombok.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of the total article counts in front of {@link ArticleRepository}, keyed by the list filters.
+ * Every page of the same list shares one count, so paging through a list counts its articles only once per time to live.
+ * Counts are not evicted on writes: a total may lag behind new or deleted articles until its entry expires.
+ */
+@Component
+public class CachedArticleCountRepository {
+
+    private final ArticleRepository articleRepository;
+    private final Cache<CountKey, Long> counts;
+
+    public CachedArticleCountRepository(final ArticleRepository articleRepository, final ArticleCountCacheProperties properties) {
+        this.articleRepository = articleRepository;
+        this.counts = CacheBuilder.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .build();
+    }
+
+    public Mono<Long> countArticlesFilteredBy(@Nullable final String tag,
+                                              @Nullable final String authorId,
+                                              @Nullable final User favoritingUser) {
+        final String favoritingUserId = favoritingUser == null ? null : favoritingUser.getId();
+        return count(new CountKey(tag, authorId, favoritingUserId, null),
+                () -> articleRepository.countArticlesFilteredBy(tag, authorId, favoritingUser));
+    }
+
+    public Mono<Long> countArticlesByAuthorIds(final Collection<String> authorIds) {
+        return count(new CountKey(null, null, null, Set.copyOf(authorIds)),
+                () -> articleRepository.countArticlesByAuthorIds(authorIds));
+    }
+
+    private Mono<Long> count(final CountKey key, final Supplier<Mono<Long>> counter) {
+        return Mono.justOrEmpty(counts.getIfPresent(key))
+                .switchIfEmpty(Mono.defer(() -> counter.get().doOnNext(count -> counts.put(key, count))));
+    }
+
+    @Value
+    private static class CountKey {
+        @Nullable String tag;
+        @Nullable String authorId;
+        @Nullable String favoritingUserId;
+        @Nullable Set<String> authorIds;
+    }
+}
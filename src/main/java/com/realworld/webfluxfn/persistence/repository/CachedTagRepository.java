@@ -0,0 +1,151 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.realworld.webfluxfn.dto.view.TagListView;
+import com.realworld.webfluxfn.persistence.entity.Tag;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the whole tag list in memory in front of {@link TagRepository}, together with its JSON,
+ * so that listing the tags reads neither Mongo nor Jackson.
+ * The list is loaded at startup, most used tags first, extended when articles add new tags through
+ * {@link #addArticleTags(Iterable)}, and reloaded every refresh interval to pick up the tags saved by other instances
+ * and the changes of the ranking.
+ */
+@Component
+@Slf4j
+public class CachedTagRepository implements ApplicationListener<ContextRefreshedEvent> {
+
+    private final TagRepository tagRepository;
+    private final ObjectMapper objectMapper;
+    private final TagCacheProperties properties;
+
+    private volatile TagList tagList;
+    private Disposable scheduledRefresh;
+
+    public CachedTagRepository(final TagRepository tagRepository, final ObjectMapper objectMapper,
+                               final TagCacheProperties properties) {
+        this.tagRepository = tagRepository;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.tagList = toTagList(List.of());
+    }
+
+    @Override
+    public void onApplicationEvent(final ContextRefreshedEvent event) {
+        refresh().block();
+        if (scheduledRefresh == null && !properties.getRefreshInterval().isZero()) {
+            scheduledRefresh = Flux.interval(properties.getRefreshInterval(), properties.getRefreshInterval())
+                    .concatMap(tick -> refresh()
+                            .onErrorResume(e -> {
+                                log.warn("tags are not refreshed", e);
+                                return Mono.empty();
+                            }))
+                    .subscribe();
+        }
+    }
+
+    @PreDestroy
+    public void stopScheduledRefresh() {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.dispose();
+        }
+    }
+
+    /**
+     * Replaces the cached tags with the ones stored in the repository.
+     */
+    public Mono<Void> refresh() {
+        return tagRepository.findAll(TagManualRepository.MOST_USED_TAG_SORT)
+                .map(Tag::getTagName)
+                .collectList()
+                .doOnNext(this::replaceAll)
+                .then();
+    }
+
+    /**
+     * Counts one more article for each of the tags, and adds the new ones to the cached list.
+     */
+    public Mono<Void> addArticleTags(final Iterable<String> tags) {
+        final Set<String> newTags = new LinkedHashSet<>();
+        tags.forEach(tag -> {
+            if (!tagList.getTagNames().contains(tag)) {
+                newTags.add(tag);
+            }
+        });
+        return tagRepository.incrementArticleCounts(tags)
+                .then(Mono.fromRunnable(() -> addAll(newTags)));
+    }
+
+    /**
+     * Counts one less article for each of the tags; unused tags stay listed.
+     */
+    public Mono<Void> removeArticleTags(final Iterable<String> tags) {
+        return tagRepository.decrementArticleCounts(tags);
+    }
+
+    /**
+     * Reads the ranking from the repository rather than from the cached list, whose order is only as recent as its last refresh.
+     */
+    public Mono<TagListView> findMostUsedTags(final int limit) {
+        return tagRepository.findMostUsedTags(limit)
+                .collectList()
+                .map(TagListView::makeInstance);
+    }
+
+    public TagListView getTagListView() {
+        return new TagListView().setTags(tagList.getTagNames().stream().toList());
+    }
+
+    /**
+     * @return the JSON of the {@link TagListView}, shared by all the callers, so it must not be modified
+     */
+    public byte[] getTagListJson() {
+        return tagList.getJson();
+    }
+
+    private synchronized void replaceAll(final List<String> tagNames) {
+        this.tagList = toTagList(tagNames);
+    }
+
+    private synchronized void addAll(final Set<String> newTags) {
+        if (newTags.isEmpty()) {
+            return;
+        }
+        final Set<String> tagNames = new LinkedHashSet<>(tagList.getTagNames());
+        if (tagNames.addAll(newTags)) {
+            this.tagList = toTagList(tagNames);
+        }
+    }
+
+    private TagList toTagList(final Iterable<String> tagNames) {
+        final Set<String> names = new LinkedHashSet<>();
+        tagNames.forEach(names::add);
+        try {
+            final byte[] json = objectMapper.writeValueAsBytes(new TagListView().setTags(List.copyOf(names)));
+            return new TagList(names, json);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Value
+    private static class TagList {
+        Set<String> tagNames;
+        byte[] json;
+    }
+}
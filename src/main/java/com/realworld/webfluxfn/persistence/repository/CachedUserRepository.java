@@ -0,0 +1,163 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.realworld.webfluxfn.exception.InvalidRequestException;
+import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.entity.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Read-through cache of {@link User} documents in front of {@link UserRepository}, keyed by id and by username.
+ * Entries are bounded in size and expire after the configured time to live; writers have to {@link #evict(User)}
+ * the users they modify. Cached users are mutable entities, so callers always get their own copy.
+ *
+ * <p>A load that started before a write may complete after its evict; every evict bumps a generation, and a
+ * loaded user is only kept when no evict of it happened while it was loading, so the stale document does not
+ * live for the whole time to live. Loads by id compare the generation of the id's stripe, loads by username,
+ * whose id is unknown up front, compare the count of all evictions.
+ */
+@Component
+@Slf4j
+public class CachedUserRepository {
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final UserRepository userRepository;
+    private final Cache<String, User> usersById;
+    private final Cache<String, String> userIdsByUsername;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CachedUserRepository(final UserRepository userRepository, final UserCacheProperties properties) {
+        this.userRepository = userRepository;
+        this.usersById = CacheBuilder.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .build();
+        this.userIdsByUsername = CacheBuilder.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .build();
+    }
+
+    public Mono<User> findById(final String id) {
+        return Mono.justOrEmpty(usersById.getIfPresent(id))
+                .switchIfEmpty(Mono.defer(() -> {
+                    final long generation = generationOf(id);
+                    return userRepository.findById(id).doOnNext(user -> putUnlessEvictedSince(user, generation));
+                }))
+                .map(CachedUserRepository::copyOf);
+    }
+
+    public Mono<User> findByUsername(final String username) {
+        return Mono.justOrEmpty(userIdsByUsername.getIfPresent(username))
+                .flatMap(this::findById)
+                // the cached id is stale when its user has been renamed since
+                .filter(user -> username.equals(user.getUsername()))
+                .switchIfEmpty(Mono.defer(() -> {
+                    final long evictionCount = evictions.get();
+                    return userRepository.findByUsername(username)
+                            .doOnNext(user -> putUnlessAnyEvictionSince(user, evictionCount))
+                            .map(CachedUserRepository::copyOf);
+                }));
+    }
+
+    public Mono<User> findByUsernameOrFail(final String username) {
+        return findByUsername(username)
+                .switchIfEmpty(Mono.error(new InvalidRequestException("Username", "not found")));
+    }
+
+    public Mono<User> findAuthorByArticle(final Article article) {
+        return findById(article.getAuthorId());
+    }
+
+    /**
+     * Resolves the given users at once: cached ones are served from memory, the rest with a single $in query.
+     */
+    public Mono<Map<String, User>> findAllById(final Collection<String> ids) {
+        final Map<String, User> found = new HashMap<>();
+        usersById.getAllPresent(ids).forEach((id, user) -> found.put(id, copyOf(user)));
+        final Set<String> missingIds = ids.stream().filter(id -> !found.containsKey(id)).collect(toSet());
+        if (missingIds.isEmpty()) {
+            return Mono.just(found);
+        }
+        final Map<String, Long> generationsById = new HashMap<>();
+        missingIds.forEach(id -> generationsById.put(id, generationOf(id)));
+        return userRepository.findAllById(missingIds)
+                .doOnNext(user -> putUnlessEvictedSince(user, generationsById.get(user.getId())))
+                .collectList()
+                .map(users -> {
+                    users.forEach(user -> found.put(user.getId(), copyOf(user)));
+                    return found;
+                });
+    }
+
+    public Mono<Map<String, User>> findAuthorsByArticles(final Collection<Article> articles) {
+        return findAllById(articles.stream().map(Article::getAuthorId).collect(toSet()));
+    }
+
+    public void evict(final User user) {
+        evict(user.getId());
+        userIdsByUsername.invalidate(user.getUsername());
+    }
+
+    /**
+     * Drops the user and its cached username, and makes the loads of it that are still in flight skip the cache.
+     */
+    public void evict(final String userId) {
+        generations.incrementAndGet(stripeOf(userId));
+        evictions.incrementAndGet();
+        invalidate(userId);
+    }
+
+    private void invalidate(final String userId) {
+        final User cached = usersById.getIfPresent(userId);
+        if (cached != null) {
+            userIdsByUsername.invalidate(cached.getUsername());
+        }
+        usersById.invalidate(userId);
+    }
+
+    private void putUnlessEvictedSince(final User user, final long generation) {
+        put(user);
+        // an evict bumps the generation before invalidating, so whichever of both runs last drops the stale entry
+        if (generationOf(user.getId()) != generation) {
+            invalidate(user.getId());
+        }
+    }
+
+    private void putUnlessAnyEvictionSince(final User user, final long evictionCount) {
+        put(user);
+        if (evictions.get() != evictionCount) {
+            invalidate(user.getId());
+        }
+    }
+
+    private void put(final User user) {
+        usersById.put(user.getId(), copyOf(user));
+        userIdsByUsername.put(user.getUsername(), user.getId());
+    }
+
+    private long generationOf(final String userId) {
+        return generations.get(stripeOf(userId));
+    }
+
+    private static int stripeOf(final String userId) {
+        return Math.floorMod(userId.hashCode(), GENERATION_STRIPES);
+    }
+
+    private static User copyOf(final User user) {
+        return user.toBuilder().build();
+    }
+}
@@ -0,0 +1,23 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.realworld.webfluxfn.persistence.OffsetBasedPageable;
+import com.realworld.webfluxfn.persistence.entity.Comment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface CommentRepository extends ReactiveMongoRepository<Comment, String> {
+    Sort OLDEST_COMMENT_SORT = Sort.by(Comment.CREATED_AT_FIELD_NAME).ascending();
+
+    Flux<Comment> findByArticleId(String articleId, Pageable pageable);
+
+    Mono<Comment> findByIdAndArticleId(String id, String articleId);
+
+    Mono<Long> deleteByArticleId(String articleId);
+
+    default Flux<Comment> findOldestCommentsByArticleId(final String articleId, final int offset, final int limit) {
+        return findByArticleId(articleId, OffsetBasedPageable.makeInstance(limit, offset, OLDEST_COMMENT_SORT));
+    }
+}
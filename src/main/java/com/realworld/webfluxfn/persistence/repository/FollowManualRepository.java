@@ -0,0 +1,56 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.realworld.webfluxfn.persistence.entity.Follow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public interface FollowManualRepository {
+    /**
+     * Inserts the follow unless it is stored already, keyed by its derived id.
+     * @return whether the follow is inserted by this call, so that it is counted only once
+     */
+    Mono<Boolean> addFollow(String followerId, String followeeId);
+
+    /**
+     * Removes the follow if it is stored.
+     * @return whether the follow is removed by this call, so that it is uncounted only once
+     */
+    Mono<Boolean> removeFollow(String followerId, String followeeId);
+}
+
+@RequiredArgsConstructor
+class FollowManualRepositoryImpl implements FollowManualRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    /**
+     * Two concurrent upserts of the same follow may both miss it, and the second one then fails on the unique id,
+     * which means the follow is stored by the first one.
+     */
+    @Override
+    public Mono<Boolean> addFollow(final String followerId, final String followeeId) {
+        final Follow follow = Follow.makeInstance(followerId, followeeId);
+        final Update update = new Update()
+                .setOnInsert(Follow.FOLLOWER_ID_FIELD_NAME, followerId)
+                .setOnInsert(Follow.FOLLOWEE_ID_FIELD_NAME, followeeId);
+        return mongoTemplate.upsert(followIdEquals(follow.getId()), update, Follow.class)
+                .map(result -> result.getUpsertedId() != null)
+                .onErrorReturn(DuplicateKeyException.class, false);
+    }
+
+    @Override
+    public Mono<Boolean> removeFollow(final String followerId, final String followeeId) {
+        return mongoTemplate.remove(followIdEquals(Follow.makeInstance(followerId, followeeId).getId()), Follow.class)
+                .map(result -> result.getDeletedCount() > 0);
+    }
+
+    private static Query followIdEquals(final String id) {
+        return new Query(where("_id").is(id));
+    }
+}
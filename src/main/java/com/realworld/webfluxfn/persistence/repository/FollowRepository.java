@@ -0,0 +1,16 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.realworld.webfluxfn.persistence.entity.Follow;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface FollowRepository extends ReactiveMongoRepository<Follow, String>, FollowManualRepository {
+    Flux<Follow> findByFolloweeId(String followeeId);
+
+    Mono<Long> countByFolloweeId(String followeeId);
+
+    default Flux<String> findFollowerIds(final String followeeId) {
+        return findByFolloweeId(followeeId).map(Follow::getFollowerId);
+    }
+}
@@ -0,0 +1,18 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@Value
+@ConfigurationProperties(prefix = "mongo.query-plan-check")
+@ConstructorBinding
+public class QueryPlanCheckProperties {
+    Mode mode;
+
+    public enum Mode {
+        OFF,
+        WARN,
+        FAIL
+    }
+}
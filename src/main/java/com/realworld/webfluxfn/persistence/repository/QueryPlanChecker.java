@@ -0,0 +1,158 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.entity.Comment;
+import com.realworld.webfluxfn.persistence.entity.Follow;
+import com.realworld.webfluxfn.persistence.entity.Tag;
+import com.realworld.webfluxfn.persistence.entity.TimelineEntry;
+import com.realworld.webfluxfn.persistence.entity.User;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Explains every query shape the repositories issue at startup, and warns or fails when one of them
+ * would scan a whole collection because no index serves it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class QueryPlanChecker implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final String COLLECTION_SCAN_STAGE = "COLLSCAN";
+    private static final String ANY_ID = "id";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final QueryPlanCheckProperties properties;
+
+    @Override
+    public void onApplicationEvent(final ContextRefreshedEvent event) {
+        if (properties.getMode() == QueryPlanCheckProperties.Mode.OFF) {
+            return;
+        }
+        final List<String> collectionScans = findCollectionScans().collectList().block();
+        if (collectionScans == null || collectionScans.isEmpty()) {
+            return;
+        }
+        final String message = "queries scanning a whole collection: " + String.join(", ", collectionScans);
+        if (properties.getMode() == QueryPlanCheckProperties.Mode.FAIL) {
+            throw new IllegalStateException(message);
+        }
+        log.warn(message);
+    }
+
+    /**
+     * The declared indexes are ensured first, so that the check does not race their asynchronous creation.
+     * @return the names of the query shapes whose winning plan scans a whole collection
+     */
+    public Flux<String> findCollectionScans() {
+        final List<QueryShape> queryShapes = queryShapes();
+        return ensureIndexes(queryShapes.stream().map(QueryShape::getEntityClass).distinct().toList())
+                .thenMany(Flux.fromIterable(queryShapes))
+                .concatMap(shape -> explain(shape)
+                        .filter(QueryPlanChecker::isCollectionScan)
+                        .map(explained -> shape.getName()));
+    }
+
+    private static List<QueryShape> queryShapes() {
+        final ArticleCursor cursor = new ArticleCursor(Instant.now(), ANY_ID);
+        final User favoritingUser = User.builder().id(ANY_ID).build();
+        return List.of(
+                new QueryShape("article by slug", Article.class,
+                        new Query(RepositoryQueries.slugEquals("slug"))),
+                new QueryShape("newest articles", Article.class,
+                        RepositoryQueries.newestArticlesFilteredByQuery(null, null, null, null, 20, 0)),
+                new QueryShape("newest articles after cursor", Article.class,
+                        RepositoryQueries.newestArticlesFilteredByQuery(null, null, null, cursor, 20, 0)),
+                new QueryShape("newest articles by tag", Article.class,
+                        RepositoryQueries.newestArticlesFilteredByQuery("tag", null, null, null, 20, 0)),
+                new QueryShape("newest articles by author", Article.class,
+                        RepositoryQueries.newestArticlesFilteredByQuery(null, ANY_ID, null, null, 20, 0)),
+                new QueryShape("newest articles by favoriting user", Article.class,
+                        RepositoryQueries.newestArticlesFilteredByQuery(null, null, favoritingUser, null, 20, 0)),
+                new QueryShape("newest articles by authors", Article.class,
+                        RepositoryQueries.newestArticlesByAuthorIdsQuery(List.of(ANY_ID), cursor, 0, 20)),
+                new QueryShape("articles by ids", Article.class,
+                        new Query(where(Article.ID_FIELD_NAME).in(List.of(ANY_ID)))),
+                new QueryShape("newest timeline entries", TimelineEntry.class,
+                        RepositoryQueries.newestEntriesQuery(ANY_ID, null, 0, 20)),
+                new QueryShape("newest timeline entries after cursor", TimelineEntry.class,
+                        RepositoryQueries.newestEntriesQuery(ANY_ID, cursor, 0, 20)),
+                new QueryShape("timeline entries of article", TimelineEntry.class,
+                        new Query(where(TimelineEntry.ARTICLE_ID_FIELD_NAME).is(ANY_ID))),
+                new QueryShape("timeline entries of author", TimelineEntry.class,
+                        new Query(where(TimelineEntry.OWNER_ID_FIELD_NAME).is(ANY_ID).and(TimelineEntry.AUTHOR_ID_FIELD_NAME).is(ANY_ID))),
+                new QueryShape("user by username", User.class,
+                        new Query(where(User.USERNAME_FIELD_NAME).is("username"))),
+                new QueryShape("user by email", User.class,
+                        new Query(where(User.EMAIL_FIELD_NAME).is("email"))),
+                new QueryShape("users by followers count", User.class,
+                        RepositoryQueries.followersCountAtLeastQuery(1000)),
+                new QueryShape("most used tags", Tag.class,
+                        new Query(where(Tag.ARTICLE_COUNT_FIELD_NAME).gt(0)).with(TagManualRepository.MOST_USED_TAG_SORT).limit(20)),
+                new QueryShape("followers of user", Follow.class,
+                        new Query(where(Follow.FOLLOWEE_ID_FIELD_NAME).is(ANY_ID))),
+                new QueryShape("oldest comments of article", Comment.class,
+                        new Query(where(Comment.ARTICLE_ID_FIELD_NAME).is(ANY_ID)).with(CommentRepository.OLDEST_COMMENT_SORT)));
+    }
+
+    private Mono<Void> ensureIndexes(final Collection<Class<?>> entityClasses) {
+        final IndexResolver indexResolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        return Flux.fromIterable(entityClasses)
+                .concatMap(entityClass -> Flux.fromIterable(indexResolver.resolveIndexFor(entityClass))
+                        .concatMap(index -> mongoTemplate.indexOps(entityClass).ensureIndex(index)))
+                .then();
+    }
+
+    private Mono<Document> explain(final QueryShape shape) {
+        final MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(shape.getEntityClass());
+        final QueryMapper queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        final Query query = shape.getQuery();
+        final Document find = new Document("find", entity.getCollection())
+                .append("filter", queryMapper.getMappedObject(query.getQueryObject(), entity))
+                .append("sort", queryMapper.getMappedSort(query.getSortObject(), entity))
+                .append("limit", query.getLimit());
+        return mongoTemplate.executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+    }
+
+    /* default */ static boolean isCollectionScan(final Document explained) {
+        final Document queryPlanner = explained.get("queryPlanner", Document.class);
+        return queryPlanner != null && hasStage(queryPlanner.get("winningPlan"), COLLECTION_SCAN_STAGE);
+    }
+
+    private static boolean hasStage(final Object plan, final String stage) {
+        if (plan instanceof Document document) {
+            return stage.equals(document.get("stage"))
+                    || document.values().stream().anyMatch(value -> hasStage(value, stage));
+        }
+        if (plan instanceof List<?> plans) {
+            return plans.stream().anyMatch(value -> hasStage(value, stage));
+        }
+        return false;
+    }
+
+    @Value
+    private static class QueryShape {
+        String name;
+        Class<?> entityClass;
+        Query query;
+    }
+}
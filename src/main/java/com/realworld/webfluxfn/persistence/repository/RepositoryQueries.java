@@ -0,0 +1,102 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.entity.TimelineEntry;
+import com.realworld.webfluxfn.persistence.entity.User;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+
+import java.util.Collection;
+
+import static java.util.Optional.ofNullable;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * The queries the manual repositories issue, built in one place so that {@link QueryPlanChecker} explains
+ * the very shapes the repositories run.
+ */
+final class RepositoryQueries {
+
+    private RepositoryQueries() {
+    }
+
+    /* default */ static Query newestArticlesFilteredByQuery(@Nullable final String tag,
+                                                             @Nullable final String authorId,
+                                                             @Nullable final User favoritingUser,
+                                                             @Nullable final ArticleCursor cursor,
+                                                             final int limit,
+                                                             final int offset) {
+        final Query query = articlesFilteredByQuery(tag, authorId, favoritingUser)
+                .skip(offset)
+                .limit(limit)
+                .with(ArticleRepository.NEWEST_ARTICLE_SORT);
+        ofNullable(cursor)
+                .ifPresent(it -> query.addCriteria(it.after()));
+        return query;
+    }
+
+    /* default */ static Query articlesFilteredByQuery(@Nullable final String tag,
+                                                       @Nullable final String authorId,
+                                                       @Nullable final User favoritingUser) {
+        final Query query = new Query();
+        ofNullable(favoritingUser)
+                .ifPresent(user -> query.addCriteria(favoritedByUser(user)));
+        ofNullable(tag)
+                .ifPresent(it -> query.addCriteria(tagsContains(it)));
+        ofNullable(authorId)
+                .ifPresent(it -> query.addCriteria(authorIdEquals(it)));
+        return query;
+    }
+
+    /* default */ static Query newestArticlesByAuthorIdsQuery(final Collection<String> authorIds,
+                                                              @Nullable final ArticleCursor cursor,
+                                                              final int offset,
+                                                              final int limit) {
+        final Query query = new Query(authorIdIn(authorIds))
+                .skip(offset)
+                .limit(limit)
+                .with(ArticleRepository.NEWEST_ARTICLE_SORT);
+        ofNullable(cursor)
+                .ifPresent(it -> query.addCriteria(it.after()));
+        return query;
+    }
+
+    /* default */ static Criteria slugEquals(final String it) {
+        return where(Article.SLUG_FIELD_NAME).is(it);
+    }
+
+    private static Criteria authorIdEquals(final String it) {
+        return where(Article.AUTHOR_ID_FIELD_NAME).is(it);
+    }
+
+    /* default */ static Criteria authorIdIn(final Collection<String> it) {
+        return where(Article.AUTHOR_ID_FIELD_NAME).in(it);
+    }
+
+    private static Criteria tagsContains(final String it) {
+        return where(Article.TAGS_FIELD_NAME).all(it);
+    }
+
+    private static Criteria favoritedByUser(final User it) {
+        return where(Article.FAVORITING_USER_IDS).all(it.getId());
+    }
+
+    /* default */ static Query newestEntriesQuery(final String ownerId, @Nullable final ArticleCursor cursor,
+                                                  final int offset, final int limit) {
+        final Query query = new Query(where(TimelineEntry.OWNER_ID_FIELD_NAME).is(ownerId))
+                .skip(offset)
+                .limit(limit)
+                .with(TimelineManualRepository.NEWEST_ENTRY_SORT);
+        ofNullable(cursor)
+                .ifPresent(it -> query.addCriteria(it.after(TimelineEntry.CREATED_AT_FIELD_NAME, TimelineEntry.ARTICLE_ID_FIELD_NAME)));
+        query.fields().include(TimelineEntry.ARTICLE_ID_FIELD_NAME, TimelineEntry.CREATED_AT_FIELD_NAME).exclude("_id");
+        return query;
+    }
+
+    /* default */ static Query followersCountAtLeastQuery(final long followersCount) {
+        final Query query = new Query(where(User.FOLLOWERS_COUNT_FIELD_NAME).gte(followersCount));
+        query.fields().include(User.ID_FIELD_NAME);
+        return query;
+    }
+}
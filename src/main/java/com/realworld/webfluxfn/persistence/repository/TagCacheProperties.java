@@ -0,0 +1,17 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+import java.time.Duration;
+
+@Value
+@ConfigurationProperties(prefix = "tag.cache")
+@ConstructorBinding
+public class TagCacheProperties {
+    /**
+     * Zero disables the scheduled refresh, which only a single instance deployment can afford.
+     */
+    Duration refreshInterval;
+}
@@ -0,0 +1,132 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.realworld.webfluxfn.persistence.entity.Tag;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public interface TagManualRepository {
+    Sort MOST_USED_TAG_SORT = Sort.by(Sort.Order.desc(Tag.ARTICLE_COUNT_FIELD_NAME), Sort.Order.asc(Tag.TAG_NAME_FIELD_NAME));
+
+    /**
+     * Inserts the tags that are not stored yet with a single unordered bulk upsert.
+     * @return the number of inserted tags
+     */
+    Mono<Long> saveAllTags(Iterable<String> tags);
+
+    /**
+     * Counts one more article for each of the tags with a single unordered bulk upsert,
+     * inserting the tags that are not stored yet.
+     * @return the number of inserted tags
+     */
+    Mono<Long> incrementArticleCounts(Iterable<String> tags);
+
+    /**
+     * Counts one less article for each of the stored tags with a single unordered bulk update.
+     */
+    Mono<Void> decrementArticleCounts(Iterable<String> tags);
+
+    /**
+     * Finds the tags of the most articles, loading only their name and count so that the index covers the query.
+     */
+    Flux<Tag> findMostUsedTags(int limit);
+}
+
+@RequiredArgsConstructor
+class TagManualRepositoryImpl implements TagManualRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Long> saveAllTags(final Iterable<String> tags) {
+        return upsertAll(tags, Updates.setOnInsert(Tag.ARTICLE_COUNT_FIELD_NAME, 0));
+    }
+
+    @Override
+    public Mono<Long> incrementArticleCounts(final Iterable<String> tags) {
+        return upsertAll(tags, Updates.inc(Tag.ARTICLE_COUNT_FIELD_NAME, 1));
+    }
+
+    @Override
+    public Mono<Void> decrementArticleCounts(final Iterable<String> tags) {
+        final List<UpdateOneModel<Document>> updates = distinct(tags).stream()
+                .map(tagName -> new UpdateOneModel<Document>(
+                        Filters.and(Filters.eq(Tag.TAG_NAME_FIELD_NAME, tagName), Filters.gt(Tag.ARTICLE_COUNT_FIELD_NAME, 0)),
+                        Updates.inc(Tag.ARTICLE_COUNT_FIELD_NAME, -1)))
+                .toList();
+        return bulkWrite(updates).then();
+    }
+
+    @Override
+    public Flux<Tag> findMostUsedTags(final int limit) {
+        final Query query = new Query(where(Tag.ARTICLE_COUNT_FIELD_NAME).gt(0))
+                .with(MOST_USED_TAG_SORT)
+                .limit(limit);
+        query.fields().include(Tag.TAG_NAME_FIELD_NAME, Tag.ARTICLE_COUNT_FIELD_NAME).exclude("_id");
+        return mongoTemplate.find(query, Tag.class);
+    }
+
+    private Mono<Long> upsertAll(final Iterable<String> tags, final Bson update) {
+        final List<UpdateOneModel<Document>> upserts = distinct(tags).stream()
+                .map(tagName -> new UpdateOneModel<Document>(
+                        Filters.eq(Tag.TAG_NAME_FIELD_NAME, tagName),
+                        update,
+                        new UpdateOptions().upsert(true)))
+                .toList();
+        return bulkWrite(upserts)
+                .map(result -> (long) result.getUpserts().size())
+                .defaultIfEmpty(0L);
+    }
+
+    private Mono<BulkWriteResult> bulkWrite(final List<UpdateOneModel<Document>> updates) {
+        if (updates.isEmpty()) {
+            return Mono.empty();
+        }
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Tag.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(updates, new BulkWriteOptions().ordered(false))))
+                .onErrorResume(MongoBulkWriteException.class, e -> retryDuplicates(e, updates));
+    }
+
+    /**
+     * Two concurrent upserts of the same new tag can both miss it, then one of them fails on the unique index.
+     * The tag is stored by then, so the failed updates are applied once more to match it.
+     */
+    private Mono<BulkWriteResult> retryDuplicates(final MongoBulkWriteException e, final List<UpdateOneModel<Document>> updates) {
+        final boolean onlyDuplicates = e.getWriteErrors().stream()
+                .allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+        if (!onlyDuplicates || e.getWriteConcernError() != null) {
+            return Mono.error(e);
+        }
+        final List<UpdateOneModel<Document>> failedUpdates = e.getWriteErrors().stream()
+                .map(error -> updates.get(error.getIndex()))
+                .toList();
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Tag.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(failedUpdates, new BulkWriteOptions().ordered(false))))
+                .thenReturn(e.getWriteResult());
+    }
+
+    private static Set<String> distinct(final Iterable<String> tags) {
+        final Set<String> tagNames = new LinkedHashSet<>();
+        tags.forEach(tagNames::add);
+        return tagNames;
+    }
+}
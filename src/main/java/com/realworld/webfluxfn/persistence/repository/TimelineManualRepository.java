@@ -0,0 +1,133 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.entity.TimelineEntry;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+import static com.realworld.webfluxfn.persistence.repository.RepositoryQueries.newestEntriesQuery;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public interface TimelineManualRepository {
+    Sort NEWEST_ENTRY_SORT = Sort.by(TimelineEntry.CREATED_AT_FIELD_NAME, TimelineEntry.ARTICLE_ID_FIELD_NAME).descending();
+
+    /**
+     * Adds the article to the timelines of the owners with a single unordered bulk upsert.
+     * @return the number of added entries
+     */
+    Mono<Long> addToTimelines(Collection<String> ownerIds, Article article);
+
+    /**
+     * Adds the newest articles of the author to the timeline of the owner, e.g. when the owner starts following the author.
+     * @return the number of added entries
+     */
+    Mono<Long> addAuthorArticles(String ownerId, String authorId, int limit);
+
+    Mono<Void> removeAuthorArticles(String ownerId, String authorId);
+
+    Mono<Void> removeArticle(String articleId);
+
+    /**
+     * Finds a page of the timeline of the owner, loading only the article ids and creation times so that the index covers the query.
+     * The page starts after the cursor if there is one, and the offset is skipped from there.
+     */
+    Flux<TimelineEntry> findNewestEntries(String ownerId, @Nullable ArticleCursor cursor, int offset, int limit);
+
+    /**
+     * Counts the entries of the timeline of the owner, scanning only the owner's range of the index.
+     */
+    Mono<Long> countEntries(String ownerId);
+}
+
+@RequiredArgsConstructor
+class TimelineManualRepositoryImpl implements TimelineManualRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Long> addToTimelines(final Collection<String> ownerIds, final Article article) {
+        return upsertAll(ownerIds.stream()
+                .distinct()
+                .map(ownerId -> TimelineEntry.makeInstance(ownerId, article))
+                .toList());
+    }
+
+    @Override
+    public Mono<Long> addAuthorArticles(final String ownerId, final String authorId, final int limit) {
+        final Query query = new Query(where(Article.AUTHOR_ID_FIELD_NAME).is(authorId))
+                .limit(limit)
+                .with(ArticleRepository.NEWEST_ARTICLE_SORT);
+        query.fields().include(Article.CREATED_AT_FIELD_NAME, Article.AUTHOR_ID_FIELD_NAME);
+        return mongoTemplate.find(query, Article.class)
+                .map(article -> TimelineEntry.makeInstance(ownerId, article))
+                .collectList()
+                .flatMap(this::upsertAll);
+    }
+
+    @Override
+    public Mono<Void> removeAuthorArticles(final String ownerId, final String authorId) {
+        final Query query = new Query(where(TimelineEntry.OWNER_ID_FIELD_NAME).is(ownerId)
+                .and(TimelineEntry.AUTHOR_ID_FIELD_NAME).is(authorId));
+        return mongoTemplate.remove(query, TimelineEntry.class).then();
+    }
+
+    @Override
+    public Mono<Void> removeArticle(final String articleId) {
+        return mongoTemplate.remove(new Query(where(TimelineEntry.ARTICLE_ID_FIELD_NAME).is(articleId)), TimelineEntry.class)
+                .then();
+    }
+
+    @Override
+    public Flux<TimelineEntry> findNewestEntries(final String ownerId, @Nullable final ArticleCursor cursor,
+                                                 final int offset, final int limit) {
+        return mongoTemplate.find(newestEntriesQuery(ownerId, cursor, offset, limit), TimelineEntry.class);
+    }
+
+    @Override
+    public Mono<Long> countEntries(final String ownerId) {
+        return mongoTemplate.count(new Query(where(TimelineEntry.OWNER_ID_FIELD_NAME).is(ownerId)), TimelineEntry.class);
+    }
+
+    /**
+     * Replacing an entry by its derived id makes writing it again harmless, so two concurrent upserts of the same entry
+     * that fail on the unique id leave it stored, and the duplicates are ignored.
+     */
+    private Mono<Long> upsertAll(final List<TimelineEntry> entries) {
+        if (entries.isEmpty()) {
+            return Mono.just(0L);
+        }
+        final List<ReplaceOneModel<Document>> upserts = entries.stream()
+                .map(entry -> {
+                    final Document document = new Document();
+                    mongoTemplate.getConverter().write(entry, document);
+                    return new ReplaceOneModel<>(Filters.eq("_id", entry.getId()), document, new ReplaceOptions().upsert(true));
+                })
+                .toList();
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(TimelineEntry.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(upserts, new BulkWriteOptions().ordered(false))))
+                .map(result -> (long) result.getUpserts().size())
+                .onErrorResume(MongoBulkWriteException.class, e -> onlyDuplicates(e)
+                        ? Mono.just((long) e.getWriteResult().getUpserts().size())
+                        : Mono.error(e));
+    }
+
+    private static boolean onlyDuplicates(final MongoBulkWriteException e) {
+        return e.getWriteConcernError() == null && e.getWriteErrors().stream()
+                .allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+    }
+}
@@ -0,0 +1,26 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+import java.time.Duration;
+
+@Value
+@ConfigurationProperties(prefix = "feed.timeline")
+@ConstructorBinding
+public class TimelineProperties {
+    /**
+     * The articles of authors with at least this many followers are not written to the timelines of their followers,
+     * but pulled from the articles when the feeds are read.
+     */
+    long fanOutMaxFollowers;
+    /**
+     * The number of the newest articles of an author added to the timeline of a new follower.
+     */
+    int followBackfillSize;
+    /**
+     * How long the ids of the pulled authors are kept before they are read again.
+     */
+    Duration pulledAuthorsTimeToLive;
+}
@@ -0,0 +1,7 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.realworld.webfluxfn.persistence.entity.TimelineEntry;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface TimelineRepository extends ReactiveMongoRepository<TimelineEntry, String>, TimelineManualRepository {
+}
@@ -0,0 +1,15 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+import java.time.Duration;
+
+@Value
+@ConfigurationProperties(prefix = "user.cache")
+@ConstructorBinding
+public class UserCacheProperties {
+    long maximumSize;
+    Duration timeToLive;
+}
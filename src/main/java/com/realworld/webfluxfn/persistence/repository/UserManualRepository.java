@@ -0,0 +1,100 @@
+package com.realworld.webfluxfn.persistence.repository;
+
+import com.realworld.webfluxfn.persistence.entity.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.realworld.webfluxfn.persistence.repository.RepositoryQueries.followersCountAtLeastQuery;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public interface UserManualRepository {
+    /**
+     * Atomically replaces the encoded password of the user, only if it is still the expected one,
+     * so that a password changed meanwhile is not overwritten.
+     * @return whether the password is replaced
+     */
+    Mono<Boolean> replaceEncodedPassword(String userId, String expectedEncodedPassword, String encodedPassword);
+
+    /**
+     * Atomically sets the username, email, encoded password, bio and image of the user, leaving the follows untouched,
+     * so that updating a profile read before a follow does not overwrite it.
+     * @return the updated user, or empty if there is no user with the id
+     */
+    Mono<User> updateProfile(User user);
+
+    /**
+     * Atomically adds the followed user to the following set of the follower with $addToSet.
+     * @return whether the follower was not following the user yet
+     */
+    Mono<Boolean> addFollowingId(String followerId, String followeeId);
+
+    /**
+     * Atomically removes the followed user from the following set of the follower with $pull.
+     * @return whether the follower was following the user
+     */
+    Mono<Boolean> removeFollowingId(String followerId, String followeeId);
+
+    Mono<Void> incrementFollowersCount(String userId, int delta);
+
+    /**
+     * Finds the ids of the users followed by at least the given number of users, which the index on the count covers.
+     */
+    Flux<String> findIdsByFollowersCountAtLeast(long followersCount);
+}
+
+@RequiredArgsConstructor
+class UserManualRepositoryImpl implements UserManualRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Boolean> replaceEncodedPassword(final String userId, final String expectedEncodedPassword,
+                                                final String encodedPassword) {
+        final Query query = new Query(where(User.ID_FIELD_NAME).is(userId)
+                .and(User.ENCODED_PASSWORD_FIELD_NAME).is(expectedEncodedPassword));
+        return mongoTemplate.updateFirst(query, Update.update(User.ENCODED_PASSWORD_FIELD_NAME, encodedPassword), User.class)
+                .map(result -> result.getModifiedCount() > 0);
+    }
+
+    @Override
+    public Mono<User> updateProfile(final User user) {
+        final Query query = new Query(where(User.ID_FIELD_NAME).is(user.getId()));
+        final Update update = new Update()
+                .set(User.USERNAME_FIELD_NAME, user.getUsername())
+                .set(User.EMAIL_FIELD_NAME, user.getEmail())
+                .set(User.ENCODED_PASSWORD_FIELD_NAME, user.getEncodedPassword())
+                .set(User.BIO_FIELD_NAME, user.getBio())
+                .set(User.IMAGE_FIELD_NAME, user.getImage());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), User.class);
+    }
+
+    @Override
+    public Mono<Boolean> addFollowingId(final String followerId, final String followeeId) {
+        final Query query = new Query(where(User.ID_FIELD_NAME).is(followerId));
+        return mongoTemplate.updateFirst(query, new Update().addToSet(User.FOLLOWING_IDS_FIELD_NAME, followeeId), User.class)
+                .map(result -> result.getModifiedCount() > 0);
+    }
+
+    @Override
+    public Mono<Boolean> removeFollowingId(final String followerId, final String followeeId) {
+        final Query query = new Query(where(User.ID_FIELD_NAME).is(followerId));
+        return mongoTemplate.updateFirst(query, new Update().pull(User.FOLLOWING_IDS_FIELD_NAME, followeeId), User.class)
+                .map(result -> result.getModifiedCount() > 0);
+    }
+
+    @Override
+    public Mono<Void> incrementFollowersCount(final String userId, final int delta) {
+        final Query query = new Query(where(User.ID_FIELD_NAME).is(userId));
+        return mongoTemplate.updateFirst(query, new Update().inc(User.FOLLOWERS_COUNT_FIELD_NAME, delta), User.class).then();
+    }
+
+    @Override
+    public Flux<String> findIdsByFollowersCountAtLeast(final long followersCount) {
+        return mongoTemplate.find(followersCountAtLeastQuery(followersCount), User.class).map(User::getId);
+    }
+}
@@ -6,7 +6,7 @@ import com.realworld.webfluxfn.exception.InvalidRequestException;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Mono;
 
-public interface UserRepository extends ReactiveMongoRepository<User, String> {
+public interface UserRepository extends ReactiveMongoRepository<User, String>, UserManualRepository {
     Mono<User> findByEmail(String email);
 
     Mono<Boolean> existsByEmail(String email);
@@ -0,0 +1,80 @@
+package com.realworld.webfluxfn.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.jsonwebtoken.Claims;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Cache of validated tokens in front of {@link JwtSigner#validate(String)}, keyed by the token itself,
+ * so that a client repeating its token skips the signature verification.
+ * Entries are bounded in size and dropped after the configured time to live, or once their token expires,
+ * whichever comes first; an expired token is then rejected by the signer again.
+ */
+@Component
+public class CachedTokenValidator {
+
+    private final JwtSigner jwtSigner;
+    private final Clock clock;
+    private final Cache<String, ValidatedToken> validatedTokens;
+
+    @Autowired
+    public CachedTokenValidator(final JwtSigner jwtSigner, final JwtCacheProperties properties) {
+        this(jwtSigner, properties, Clock.systemUTC());
+    }
+
+    /* default */ CachedTokenValidator(final JwtSigner jwtSigner, final JwtCacheProperties properties, final Clock clock) {
+        this.jwtSigner = jwtSigner;
+        this.clock = clock;
+        this.validatedTokens = CacheBuilder.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .build();
+    }
+
+    /**
+     * @throws io.jsonwebtoken.JwtException when the token is not signed by the signer or has expired
+     */
+    public TokenPrincipal validate(final String token) {
+        final Optional<TokenPrincipal> validated = findValidated(token);
+        if (validated.isPresent()) {
+            return validated.get();
+        }
+        final Claims claims = jwtSigner.validate(token).getBody();
+        final TokenPrincipal principal = new TokenPrincipal(claims.getSubject(), token);
+        final Date expiration = claims.getExpiration();
+        // a token without expiration would be trusted for the whole time to live, so it is verified every time instead
+        if (expiration != null) {
+            validatedTokens.put(token, new ValidatedToken(principal, expiration.toInstant()));
+        }
+        return principal;
+    }
+
+    /**
+     * @return the principal of the token, only if it has been validated before and has not expired since
+     */
+    public Optional<TokenPrincipal> findValidated(final String token) {
+        final ValidatedToken cached = validatedTokens.getIfPresent(token);
+        if (cached == null) {
+            return Optional.empty();
+        }
+        if (!clock.instant().isBefore(cached.getExpiration())) {
+            validatedTokens.invalidate(token);
+            return Optional.empty();
+        }
+        return Optional.of(cached.getPrincipal());
+    }
+
+    @Value
+    private static class ValidatedToken {
+        TokenPrincipal principal;
+        Instant expiration;
+    }
+}
@@ -0,0 +1,18 @@
+package com.realworld.webfluxfn.security;
+
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+import java.time.Duration;
+
+@Value
+@ConfigurationProperties(prefix = "jwt.cache")
+@ConstructorBinding
+public class JwtCacheProperties {
+    long maximumSize;
+    /**
+     * The longest time a validated token is trusted without verifying its signature again, even when it expires later.
+     */
+    Duration timeToLive;
+}
@@ -1,11 +1,8 @@
 package com.realworld.webfluxfn.security;
 
 import com.realworld.webfluxfn.security.JwtProperties;
-import com.realworld.webfluxfn.security.JwtSigner;
 import com.realworld.webfluxfn.security.TokenExtractor;
 import com.realworld.webfluxfn.security.TokenPrincipal;
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jws;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -21,7 +18,8 @@ import reactor.core.publisher.Mono;
 import java.util.List;
 
 @Configuration
-@EnableConfigurationProperties(JwtProperties.class)
+@EnableConfigurationProperties({JwtProperties.class, JwtSigningProperties.class, JwtCacheProperties.class,
+        JwtVerificationProperties.class})
 public class JwtConfig {
 
     @Bean
@@ -38,17 +36,15 @@ public class JwtConfig {
     }
 
     @Bean
-    /* default */ ReactiveAuthenticationManager jwtAuthenticationManager(final JwtSigner tokenService) {
-        return authentication -> Mono.justOrEmpty(authentication).map(auth -> {
+    /* default */ ReactiveAuthenticationManager jwtAuthenticationManager(final TokenVerificationService tokenVerificationService) {
+        return authentication -> Mono.justOrEmpty(authentication).flatMap(auth -> {
             final String token = (String) auth.getCredentials();
-            final Jws<Claims> jws = tokenService.validate(token);
-            final String userId = jws.getBody().getSubject();
-            final TokenPrincipal tokenPrincipal = new TokenPrincipal(userId, token);
-            return new UsernamePasswordAuthenticationToken(
-                    tokenPrincipal,
-                    token,
-                    List.of(new SimpleGrantedAuthority("ROLE_USER"))
-            );
+            return tokenVerificationService.validate(token)
+                    .map(tokenPrincipal -> new UsernamePasswordAuthenticationToken(
+                            tokenPrincipal,
+                            token,
+                            List.of(new SimpleGrantedAuthority("ROLE_USER"))
+                    ));
         });
     }
 
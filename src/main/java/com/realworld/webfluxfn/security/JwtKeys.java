@@ -0,0 +1,153 @@
+package com.realworld.webfluxfn.security;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.util.CollectionUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The keys of {@link JwtSigner}, by id: the active one signs new tokens, any of them verifies the tokens it signed.
+ */
+@Slf4j
+/* default */ final class JwtKeys {
+    private static final String GENERATED_KEY_ID = "generated";
+    private static final String DEFAULT_KEY_STORE_TYPE = "PKCS12";
+
+    private final Map<String, JwtKey> keysById;
+    private final JwtKey activeKey;
+
+    private JwtKeys(final Map<String, JwtKey> keysById, final String activeKeyId) {
+        this.keysById = keysById;
+        this.activeKey = keysById.get(activeKeyId);
+        if (activeKey == null || activeKey.getSigningKey() == null) {
+            throw new IllegalStateException("jwt.signing.activeKeyId " + activeKeyId + " names no key with a private key or secret");
+        }
+    }
+
+    /* default */ static JwtKeys load(final JwtSigningProperties properties) {
+        if (CollectionUtils.isEmpty(properties.getKeys())) {
+            log.warn("no jwt.signing.keys configured, tokens are signed with a generated key and invalid after a restart");
+            final KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+            final JwtKey generatedKey = new JwtKey(GENERATED_KEY_ID, SignatureAlgorithm.RS256, keyPair.getPrivate(), keyPair.getPublic());
+            return new JwtKeys(Map.of(GENERATED_KEY_ID, generatedKey), GENERATED_KEY_ID);
+        }
+        final Map<String, JwtKey> keysById = new LinkedHashMap<>();
+        properties.getKeys().forEach(key -> keysById.put(key.getId(), toJwtKey(key)));
+        return new JwtKeys(keysById, properties.getActiveKeyId());
+    }
+
+    /* default */ JwtKey getActiveKey() {
+        return activeKey;
+    }
+
+    /**
+     * Tokens signed before key ids were introduced have none, and are verified by the active key.
+     */
+    /* default */ Key getVerificationKey(final JwsHeader<?> header) {
+        final String keyId = header.getKeyId();
+        final JwtKey key = keyId == null ? activeKey : keysById.get(keyId);
+        if (key == null) {
+            throw new UnsupportedJwtException("unknown key id " + keyId);
+        }
+        // otherwise a token could pick a weaker algorithm than the one of its key
+        if (!key.getAlgorithm().getValue().equals(header.getAlgorithm())) {
+            throw new UnsupportedJwtException("algorithm " + header.getAlgorithm() + " does not match key " + key.getId());
+        }
+        return key.getVerificationKey();
+    }
+
+    private static JwtKey toJwtKey(final JwtSigningProperties.SigningKey properties) {
+        final SignatureAlgorithm algorithm = Objects.requireNonNull(properties.getAlgorithm(),
+                "jwt.signing.keys algorithm of " + properties.getId());
+        try {
+            if (properties.getKeyStore() != null) {
+                return fromKeyStore(properties, algorithm);
+            }
+            if (algorithm.isHmac()) {
+                final Key secret = Keys.hmacShaKeyFor(Decoders.BASE64.decode(properties.getSecret()));
+                return new JwtKey(properties.getId(), algorithm, secret, secret);
+            }
+            final KeyFactory keyFactory = KeyFactory.getInstance(keyFactoryAlgorithm(algorithm));
+            final Key privateKey = properties.getPrivateKey() == null
+                    ? null
+                    : keyFactory.generatePrivate(new PKCS8EncodedKeySpec(readPem(properties.getPrivateKey())));
+            final Key publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(readPem(properties.getPublicKey())));
+            return new JwtKey(properties.getId(), algorithm, privateKey, publicKey);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("jwt.signing.keys " + properties.getId() + " cannot be loaded", e);
+        }
+    }
+
+    private static JwtKey fromKeyStore(final JwtSigningProperties.SigningKey properties, final SignatureAlgorithm algorithm)
+            throws GeneralSecurityException {
+        final char[] password = properties.getKeyStorePassword() == null ? new char[0] : properties.getKeyStorePassword().toCharArray();
+        final KeyStore keyStore = KeyStore.getInstance(properties.getKeyStoreType() == null
+                ? DEFAULT_KEY_STORE_TYPE : properties.getKeyStoreType());
+        try (InputStream in = properties.getKeyStore().getInputStream()) {
+            keyStore.load(in, password);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final Key key = keyStore.getKey(properties.getId(), password);
+        if (algorithm.isHmac()) {
+            return new JwtKey(properties.getId(), algorithm, key, key);
+        }
+        final Certificate certificate = keyStore.getCertificate(properties.getId());
+        if (certificate == null) {
+            throw new IllegalStateException("jwt.signing.keys " + properties.getId() + " has no certificate in its key store");
+        }
+        return new JwtKey(properties.getId(), algorithm, key, certificate.getPublicKey());
+    }
+
+    private static String keyFactoryAlgorithm(final SignatureAlgorithm algorithm) {
+        if (algorithm.isRsa()) {
+            return "RSA";
+        }
+        if (algorithm.isEllipticCurve()) {
+            return "EC";
+        }
+        throw new IllegalStateException("unsupported jwt.signing.keys algorithm " + algorithm);
+    }
+
+    private static byte[] readPem(final Resource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            final String pem = new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+            return Base64.getMimeDecoder().decode(pem.replaceAll("-----(BEGIN|END) [A-Z ]+-----", ""));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Value
+    /* default */ static class JwtKey {
+        String id;
+        SignatureAlgorithm algorithm;
+        /**
+         * The private key or secret, missing from the keys which only verify.
+         */
+        Key signingKey;
+        Key verificationKey;
+    }
+}
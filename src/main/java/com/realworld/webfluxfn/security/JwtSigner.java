@@ -2,30 +2,44 @@ package com.realworld.webfluxfn.security;
 
 import com.realworld.webfluxfn.service.user.UserTokenProvider;
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.security.KeyPair;
+import java.security.Key;
 import java.util.Date;
 
 @Component
-@RequiredArgsConstructor
 public class JwtSigner implements UserTokenProvider {
 
-    private final KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
-    private final JwtParser jwtParser = Jwts.parserBuilder()
-            .setSigningKey(keyPair.getPublic())
-            .build();
+    private final JwtKeys keys;
+    private final JwtParser jwtParser;
     private final JwtProperties jwtProperties;
 
+    public JwtSigner(final JwtProperties jwtProperties, final JwtSigningProperties signingProperties) {
+        this.jwtProperties = jwtProperties;
+        this.keys = JwtKeys.load(signingProperties);
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    /**
+                     * The adapter of jjwt 0.11 declares the raw header type, so the override cannot use {@code JwsHeader<?>}.
+                     */
+                    @Override
+                    @SuppressWarnings("rawtypes")
+                    public Key resolveSigningKey(final JwsHeader header, final Claims claims) {
+                        return keys.getVerificationKey(header);
+                    }
+                })
+                .build();
+    }
+
     public Jws<Claims> validate(final String jwt) {
         return jwtParser.parseClaimsJws(jwt);
     }
 
     public String generateToken(final String userId) {
+        final JwtKeys.JwtKey activeKey = keys.getActiveKey();
         return Jwts.builder()
-                .signWith(keyPair.getPrivate(), SignatureAlgorithm.RS256)
+                .setHeaderParam(JwsHeader.KEY_ID, activeKey.getId())
+                .signWith(activeKey.getSigningKey(), activeKey.getAlgorithm())
                 .setSubject(userId)
                 .setExpiration(expirationDate())
                 .compact();
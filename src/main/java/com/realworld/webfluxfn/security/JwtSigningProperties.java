@@ -0,0 +1,47 @@
+package com.realworld.webfluxfn.security;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.core.io.Resource;
+
+import java.util.List;
+
+@Value
+@ConfigurationProperties(prefix = "jwt.signing")
+@ConstructorBinding
+public class JwtSigningProperties {
+    /**
+     * The id of the key signing new tokens; the other keys only verify the tokens they signed before a rotation.
+     */
+    String activeKeyId;
+    /**
+     * Without any key, tokens are signed with an RS256 key pair generated at startup, only valid until the next one.
+     */
+    List<SigningKey> keys;
+
+    /**
+     * A key of the given algorithm, read from exactly one of a Base64 HMAC secret, PEM files or a key store.
+     */
+    @Value
+    public static class SigningKey {
+        String id;
+        SignatureAlgorithm algorithm;
+        String secret;
+        /**
+         * A PKCS#8 PEM file, which may be left out to only verify the tokens of another node.
+         */
+        Resource privateKey;
+        /**
+         * An X.509 PEM file.
+         */
+        Resource publicKey;
+        /**
+         * A key store holding the key under the alias of its id.
+         */
+        Resource keyStore;
+        String keyStoreType;
+        String keyStorePassword;
+    }
+}
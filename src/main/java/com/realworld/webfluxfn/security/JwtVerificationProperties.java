@@ -0,0 +1,38 @@
+package com.realworld.webfluxfn.security;
+
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@Value
+@ConfigurationProperties(prefix = "jwt.verification")
+@ConstructorBinding
+public class JwtVerificationProperties {
+    Mode mode;
+
+    /**
+     * The number of threads verifying signatures at once, when scheduled.
+     */
+    int parallelism;
+
+    /**
+     * The number of verifications waiting for a thread, beyond which new ones fail fast, when scheduled.
+     * The scheduler bounds the waiting verifications of each thread, so the capacity is split evenly across the threads.
+     */
+    int queueCapacity;
+
+    public int getQueueCapacityPerThread() {
+        return Math.max(1, (queueCapacity + parallelism - 1) / parallelism);
+    }
+
+    public enum Mode {
+        /**
+         * Verifies on the calling thread, usually the event loop.
+         */
+        INLINE,
+        /**
+         * Verifies on a bounded scheduler of its own.
+         */
+        SCHEDULED
+    }
+}
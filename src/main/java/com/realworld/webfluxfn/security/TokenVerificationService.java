@@ -0,0 +1,69 @@
+package com.realworld.webfluxfn.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Validates tokens for the authentication manager. Tokens validated before are served by {@link CachedTokenValidator}
+ * on the calling thread; the others have their signature verified inline or, when scheduled, on a scheduler of its own
+ * with a bounded number of threads and of waiting verifications, so that bursts of new tokens do not stall the event loop.
+ * Beyond those bounds verifications fail fast with 503 Service Unavailable.
+ */
+@Component
+public class TokenVerificationService {
+    private static final String QUEUED_TIMER_NAME = "jwt.verification.queued";
+    private static final String VERIFICATION_TIMER_NAME = "jwt.verification.time";
+    private static final String REJECTED_COUNTER_NAME = "jwt.verification.rejected";
+
+    private final CachedTokenValidator tokenValidator;
+    private final Scheduler scheduler;
+    private final Timer queuedTimer;
+    private final Timer verificationTimer;
+    private final Counter rejectedCounter;
+
+    public TokenVerificationService(final CachedTokenValidator tokenValidator, final JwtVerificationProperties properties,
+                                    final MeterRegistry meterRegistry) {
+        this.tokenValidator = tokenValidator;
+        this.scheduler = properties.getMode() == JwtVerificationProperties.Mode.SCHEDULED
+                ? Schedulers.newBoundedElastic(properties.getParallelism(), properties.getQueueCapacityPerThread(), "jwt-verification")
+                : Schedulers.immediate();
+        this.queuedTimer = meterRegistry.timer(QUEUED_TIMER_NAME);
+        this.verificationTimer = meterRegistry.timer(VERIFICATION_TIMER_NAME);
+        this.rejectedCounter = meterRegistry.counter(REJECTED_COUNTER_NAME);
+    }
+
+    public Mono<TokenPrincipal> validate(final String token) {
+        return Mono.defer(() -> tokenValidator.findValidated(token)
+                .map(Mono::just)
+                .orElseGet(() -> verify(token)));
+    }
+
+    @PreDestroy
+    public void dispose() {
+        scheduler.dispose();
+    }
+
+    private Mono<TokenPrincipal> verify(final String token) {
+        final long queuedAt = System.nanoTime();
+        return Mono.fromCallable(() -> {
+                    queuedTimer.record(Duration.ofNanos(System.nanoTime() - queuedAt));
+                    return verificationTimer.recordCallable(() -> tokenValidator.validate(token));
+                })
+                .subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, e -> {
+                    rejectedCounter.increment();
+                    return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "token verification is saturated", e);
+                });
+    }
+}
@@ -0,0 +1,9 @@
+package com.realworld.webfluxfn.service.article;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({FeedStreamProperties.class, ArticleMappingProperties.class})
+class ArticleConfig {
+}
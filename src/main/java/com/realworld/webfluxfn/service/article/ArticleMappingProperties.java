@@ -0,0 +1,20 @@
+package com.realworld.webfluxfn.service.article;
+
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@Value
+@ConfigurationProperties(prefix = "article.mapping")
+@ConstructorBinding
+public class ArticleMappingProperties {
+    /**
+     * The number of articles whose distinct authors are resolved with a single query when a list is mapped into views.
+     */
+    int chunkSize;
+
+    /**
+     * The number of chunks of a list whose authors are resolved at once.
+     */
+    int concurrency;
+}
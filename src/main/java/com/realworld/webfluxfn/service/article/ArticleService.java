@@ -6,31 +6,46 @@ import com.realworld.webfluxfn.dto.request.CreateCommentRequest;
 import com.realworld.webfluxfn.dto.request.UpdateArticleRequest;
 import com.realworld.webfluxfn.dto.view.ProfileView;
 import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.repository.ArticleCursor;
+import com.realworld.webfluxfn.persistence.repository.ArticleListProperties;
 import com.realworld.webfluxfn.persistence.repository.ArticleRepository;
-import com.realworld.webfluxfn.persistence.repository.TagRepository;
+import com.realworld.webfluxfn.persistence.repository.CachedTagRepository;
 import com.realworld.webfluxfn.persistence.entity.User;
 import com.realworld.webfluxfn.exception.InvalidRequestException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.Optional;
 import java.util.UUID;
 
-import static java.util.Optional.ofNullable;
-
 @Service
 @RequiredArgsConstructor
 public class ArticleService {
 
     private final ArticleRepository articleRepository;
-    private final TagRepository tagRepository;
+    private final CachedTagRepository tagRepository;
     private final UserArticleService userArticleService;
+    private final ArticleListProperties articleListProperties;
+    private final TimelineService timelineService;
+    private final FeedStreamService feedStreamService;
 
     public Mono<TagListView> getTags() {
-        return this.tagRepository.findAll()
-                .collectList()
-                .map(TagListView::makeInstance);
+        return Mono.fromSupplier(this.tagRepository::getTagListView);
+    }
+
+    public Mono<TagListView> getTags(final int limit) {
+        return this.tagRepository.findMostUsedTags(limit);
+    }
+
+    /**
+     * @return the JSON of {@link #getTags()}, serialized once per change of the tags
+     */
+    public byte[] getTagListJson() {
+        return this.tagRepository.getTagListJson();
     }
 
     public Mono<ArticleView> createArticle(final Mono<CreateArticleRequest> request, final User author) {
@@ -38,23 +53,51 @@ public class ArticleService {
         final ProfileView profileView = ProfileView.toUnfollowedProfileView(author);
         final Mono<Article> newArticle = request.map(e -> e.toArticle(id, author.getId()));
         return Mono.defer(() -> this.articleRepository.saveAll(newArticle).single()
+                .onErrorMap(DuplicateKeyException.class, ArticleService::titleAlreadyUsed)
                 .flatMap(article -> Mono.defer(() -> this.tagRepository
-                        .saveAllTags(article.getTags()).then(Mono.just(article))))
+                        .addArticleTags(article.getTags())
+                        .then(this.timelineService.fanOut(article, author))
+                        .then(Mono.fromRunnable(() -> this.feedStreamService.publish(article, author)))
+                        .then(Mono.just(article))))
                 .map(article -> ArticleView.toUnfavoredArticleView(article, profileView)));
     }
 
-    public Mono<MultipleArticlesView> feed(final int offset, final int limit, final User currentUser) {
-        final var followingAuthorIds = currentUser.getFollowingIds();
-        return Mono.defer(() -> this.articleRepository
-                .findNewestArticlesByAuthorIds(followingAuthorIds, offset, limit)
-                .flatMap(article -> Mono.defer(() -> this.userArticleService.mapToArticleView(article, currentUser)))
-                .collectList()
-                .map(MultipleArticlesView::makeInstance));
+    public Mono<MultipleArticlesView> feed(final int offset, final int limit, @Nullable final ArticleCursor cursor,
+                                           final User currentUser) {
+        return Mono.defer(() -> Mono.zip(this.timelineService
+                                .findFeed(currentUser, this.articleListProperties.getProjection(), cursor, offset, limit),
+                        this.timelineService.countFeed(currentUser))
+                .flatMap(page -> this.userArticleService.mapToMultipleArticlesView(page.getT1(), limit, page.getT2(),
+                        Optional.of(currentUser))));
+    }
+
+    /**
+     * Streams the views of a page of the feed as soon as they are mapped, instead of the view of the whole page.
+     */
+    public Flux<ArticleView> streamFeedPage(final int offset, final int limit, @Nullable final ArticleCursor cursor,
+                                            final User currentUser) {
+        return Flux.defer(() -> this.userArticleService.streamArticleViews(this.timelineService
+                        .findFeed(currentUser, this.articleListProperties.getProjection(), cursor, offset, limit)
+                        .flatMapMany(Flux::fromIterable), Optional.of(currentUser)));
+    }
+
+    /**
+     * @return the articles of the feed created from now on, as they are created
+     */
+    public Flux<ArticleView> streamFeed(final User currentUser) {
+        return this.feedStreamService.stream(currentUser);
     }
 
     public Mono<MultipleArticlesView> findArticles(final String tag, final String authorName, final String favoritingUserName,
-                                                   final int offset, final int limit, final Optional<User> currentUser) {
-        return this.userArticleService.findArticles(tag, authorName, favoritingUserName, offset, limit, currentUser);
+                                                   final int offset, final int limit, @Nullable final ArticleCursor cursor,
+                                                   final Optional<User> currentUser) {
+        return this.userArticleService.findArticles(tag, authorName, favoritingUserName, offset, limit, cursor, currentUser);
+    }
+
+    public Flux<ArticleView> streamArticles(final String tag, final String authorName, final String favoritingUserName,
+                                            final int offset, final int limit, @Nullable final ArticleCursor cursor,
+                                            final Optional<User> currentUser) {
+        return this.userArticleService.streamArticles(tag, authorName, favoritingUserName, offset, limit, cursor, currentUser);
     }
 
     public Mono<ArticleView> getArticle(final String slug, final Optional<User> currentUser) {
@@ -63,73 +106,70 @@ public class ArticleService {
     }
 
     public Mono<ArticleView> updateArticle(final String slug, final Mono<UpdateArticleRequest> request, final User actionUser) {
-        return this.articleRepository.findBySlugOrFail(slug)
-                .flatMap(article -> {
-                    if (!article.isAuthor(actionUser)) {
-                        return Mono.error(new InvalidRequestException("Article", "only author can update article"));
-                    }
-                    return request.map(m -> {
-                        ofNullable(m.getBody()).ifPresent(article::setBody);
-                        ofNullable(m.getDescription()).ifPresent(article::setDescription);
-                        ofNullable(m.getTitle()).ifPresent(article::setTitle);
-                        return article;
-                    });
-                })
-                .flatMap(r -> this.articleRepository.save(r) )
+        return request
+                .flatMap(m -> this.articleRepository.updateContent(slug, actionUser.getId(), m.getTitle(), m.getDescription(),
+                        m.getBody()))
+                .onErrorMap(DuplicateKeyException.class, ArticleService::titleAlreadyUsed)
+                .switchIfEmpty(Mono.defer(() -> this.articleRepository.findBySlugOrFail(slug)
+                        .flatMap(article -> Mono.error(new InvalidRequestException("Article", "only author can update article")))))
                 .flatMap(article -> this.userArticleService.mapToArticleView(article, actionUser));
     }
 
-    public Mono<Void> deleteArticle(final String slug, final User articleAuthor) {
+    public Mono<Void> deleteArticle(final String slug, final String articleAuthorId) {
         return this.articleRepository.findBySlug(slug)
                 .flatMap(article -> {
-                    if (!article.isAuthor(articleAuthor)) {
+                    if (!article.isAuthor(articleAuthorId)) {
                         return Mono.error(new InvalidRequestException("Article", "only author can delete article"));
                     }
-                    return this.articleRepository.deleteArticleBySlug(slug).then();
+                    return this.articleRepository.deleteArticleBySlug(slug)
+                            .then(this.userArticleService.deleteComments(article))
+                            .then(this.timelineService.removeArticle(article))
+                            .then(this.tagRepository.removeArticleTags(article.getTags()));
                 });
     }
 
-    public Mono<CommentView> addComment(final String slug, final Mono<CreateCommentRequest> request, final User currentUser) {
-        return this.userArticleService.addComment(slug, request, currentUser);
+    public Mono<CommentView> addComment(final String slug, final Mono<CreateCommentRequest> request, final String currentUserId) {
+        return this.userArticleService.addComment(slug, request, currentUserId);
     }
 
-    public Mono<Void> deleteComment(final String commentId, final String slug, final User user) {
-        return this.userArticleService.deleteComment(commentId, slug, user);
+    public Mono<Void> deleteComment(final String commentId, final String slug, final String userId) {
+        return this.userArticleService.deleteComment(commentId, slug, userId);
     }
 
-    public Mono<MultipleCommentsView> getComments(final String slug, final Optional<User> user) {
-        return this.userArticleService.getComments(slug, user);
+    public Mono<MultipleCommentsView> getComments(final String slug, final int offset, final int limit,
+                                                  final Optional<User> user) {
+        return this.userArticleService.getComments(slug, offset, limit, user);
     }
 
-    public Mono<ArticleView> favoriteArticle(final String slug, final User actionUser) {
-        return updateArticleOnAction(slug, actionUser, ArticleAction.FAVORITE);
+    public Mono<ArticleView> favoriteArticle(final String slug, final String actionUserId) {
+        return updateArticleOnAction(slug, actionUserId, ArticleAction.FAVORITE);
     }
 
-    public Mono<ArticleView> unfavoriteArticle(final String slug, final User actionUser) {
-        return updateArticleOnAction(slug, actionUser, ArticleAction.UNFAVORITE);
+    public Mono<ArticleView> unfavoriteArticle(final String slug, final String actionUserId) {
+        return updateArticleOnAction(slug, actionUserId, ArticleAction.UNFAVORITE);
     }
 
-    private Mono<ArticleView> updateArticleOnAction(final String slug, final User actionUser, final ArticleAction action) {
-        return this.articleRepository.findBySlug(slug)
-                .flatMap(article -> {
-                    if (action.act(article, actionUser)) {
-                        return this.articleRepository.save(article);
-                    }
-                    return Mono.just(article);
-                })
-                .flatMap(r -> this.userArticleService.mapToArticleView(r, actionUser));
+    private Mono<ArticleView> updateArticleOnAction(final String slug, final String actionUserId, final ArticleAction action) {
+        return action.act(this.articleRepository, slug, actionUserId)
+                .flatMap(r -> this.userArticleService.mapToArticleView(r, actionUserId));
     }
 
+    /**
+     * The slug is derived from the title and unique, so a duplicate key is a title clash.
+     */
+    private static InvalidRequestException titleAlreadyUsed(final DuplicateKeyException e) {
+        return new InvalidRequestException("Title", "already used by another article", e);
+    }
 
     enum ArticleAction {
         FAVORITE,
         UNFAVORITE;
 
-        public boolean act(final Article article, final User actionUser) {
+        public Mono<Article> act(final ArticleRepository articleRepository, final String slug, final String actionUserId) {
             switch(this) {
-                case FAVORITE: return article.favoriteByUser(actionUser);
-                case UNFAVORITE: return article.unfavoriteByUser(actionUser);
-                default: return false;
+                case FAVORITE: return articleRepository.addFavoritingUser(slug, actionUserId);
+                case UNFAVORITE: return articleRepository.removeFavoritingUser(slug, actionUserId);
+                default: return Mono.empty();
             }
         }
     }
@@ -0,0 +1,21 @@
+package com.realworld.webfluxfn.service.article;
+
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@Value
+@ConfigurationProperties(prefix = "feed.stream")
+@ConstructorBinding
+public class FeedStreamProperties {
+    /**
+     * The number of new articles kept for a connection that reads slower than they are created;
+     * beyond it the oldest ones are dropped.
+     */
+    int bufferSize;
+
+    /**
+     * The number of connections streaming at once, beyond which new ones are rejected.
+     */
+    int maxSubscribers;
+}
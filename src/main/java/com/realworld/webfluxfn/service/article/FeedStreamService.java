@@ -0,0 +1,82 @@
+package com.realworld.webfluxfn.service.article;
+
+import com.realworld.webfluxfn.dto.view.ArticleView;
+import com.realworld.webfluxfn.dto.view.ProfileView;
+import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the articles created on this instance to the connected followers of their authors, so that clients
+ * are told about new articles instead of polling their feed.
+ * All the connections share one sink that never waits for them: each connection buffers up to
+ * {@link FeedStreamProperties#getBufferSize()} articles and drops the oldest ones beyond, so a slow reader
+ * loses articles rather than slowing down the others or the article creation.
+ * The followed authors are those of the reader when the connection opens.
+ */
+@Service
+public class FeedStreamService {
+    private static final String SUBSCRIBERS_GAUGE_NAME = "feed.stream.subscribers";
+    private static final String DROPPED_COUNTER_NAME = "feed.stream.dropped";
+    private static final String REJECTED_COUNTER_NAME = "feed.stream.rejected";
+
+    private final Sinks.Many<NewArticle> sink = Sinks.many().multicast().directBestEffort();
+    private final FeedStreamProperties properties;
+    private final AtomicInteger subscribers;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+
+    public FeedStreamService(final FeedStreamProperties properties, final MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.subscribers = meterRegistry.gauge(SUBSCRIBERS_GAUGE_NAME, new AtomicInteger());
+        this.droppedCounter = meterRegistry.counter(DROPPED_COUNTER_NAME);
+        this.rejectedCounter = meterRegistry.counter(REJECTED_COUNTER_NAME);
+    }
+
+    /**
+     * Hands the new article to the connected followers of its author, as they see it.
+     * Serialized, since the sink does not accept concurrent emissions.
+     */
+    public synchronized void publish(final Article article, final User author) {
+        final ArticleView articleView = ArticleView.toUnfavoredArticleView(article, ProfileView.toFollowedProfileView(author));
+        sink.tryEmitNext(new NewArticle(author.getId(), articleView));
+    }
+
+    /**
+     * @return the articles created from now on by the authors the reader follows, until the subscription is cancelled;
+     * an error with 503 Service Unavailable if {@link FeedStreamProperties#getMaxSubscribers()} connections stream already
+     */
+    public Flux<ArticleView> stream(final User reader) {
+        final Set<String> followingIds = reader.getFollowingIds();
+        return Flux.defer(() -> {
+            if (subscribers.incrementAndGet() > properties.getMaxSubscribers()) {
+                subscribers.decrementAndGet();
+                rejectedCounter.increment();
+                return Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "feed streams are saturated"));
+            }
+            return sink.asFlux()
+                    .filter(newArticle -> followingIds.contains(newArticle.getAuthorId()))
+                    .map(NewArticle::getArticleView)
+                    .onBackpressureBuffer(properties.getBufferSize(), dropped -> droppedCounter.increment(),
+                            BufferOverflowStrategy.DROP_OLDEST)
+                    .doFinally(signal -> subscribers.decrementAndGet());
+        });
+    }
+
+    @Value
+    private static class NewArticle {
+        String authorId;
+        ArticleView articleView;
+    }
+}
@@ -0,0 +1,179 @@
+package com.realworld.webfluxfn.service.article;
+
+import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.entity.TimelineEntry;
+import com.realworld.webfluxfn.persistence.entity.User;
+import com.realworld.webfluxfn.persistence.repository.ArticleCursor;
+import com.realworld.webfluxfn.persistence.repository.ArticleProjection;
+import com.realworld.webfluxfn.persistence.repository.ArticleRepository;
+import com.realworld.webfluxfn.persistence.repository.CachedArticleCountRepository;
+import com.realworld.webfluxfn.persistence.repository.FollowRepository;
+import com.realworld.webfluxfn.persistence.repository.TimelineProperties;
+import com.realworld.webfluxfn.persistence.repository.TimelineRepository;
+import com.realworld.webfluxfn.persistence.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the feeds materialized: a created article is written to the timelines of the followers of its author,
+ * so that reading a feed is a range scan of the timeline of the reader.
+ * The articles of authors with at least {@link TimelineProperties#getFanOutMaxFollowers()} followers are not written,
+ * since one article would write that many entries; they are pulled from the articles of these authors when the feeds are read,
+ * and merged with the timeline.
+ * An author is pulled or not by the followers count at the time, so the articles created while an author had more followers
+ * than the threshold are left out of the feeds once the author has fewer.
+ */
+@Service
+@Slf4j
+public class TimelineService {
+    private static final String FAN_OUT_FAILED_COUNTER_NAME = "feed.timeline.fanout.failed";
+    private static final int FAN_OUT_BATCH_SIZE = 1000;
+    private static final Comparator<Article> NEWEST_ARTICLE_ORDER = Comparator.comparing(Article::getCreatedAt)
+            .thenComparing(Article::getId)
+            .reversed();
+
+    private final TimelineRepository timelineRepository;
+    private final ArticleRepository articleRepository;
+    private final FollowRepository followRepository;
+    private final CachedArticleCountRepository articleCountRepository;
+    private final TimelineProperties properties;
+    private final Mono<Set<String>> pulledAuthorIds;
+    private final Counter fanOutFailedCounter;
+
+    public TimelineService(final TimelineRepository timelineRepository, final ArticleRepository articleRepository,
+                           final FollowRepository followRepository, final UserRepository userRepository,
+                           final CachedArticleCountRepository articleCountRepository, final TimelineProperties properties,
+                           final MeterRegistry meterRegistry) {
+        this.timelineRepository = timelineRepository;
+        this.articleRepository = articleRepository;
+        this.followRepository = followRepository;
+        this.articleCountRepository = articleCountRepository;
+        this.properties = properties;
+        this.pulledAuthorIds = userRepository.findIdsByFollowersCountAtLeast(properties.getFanOutMaxFollowers())
+                .collect(Collectors.toSet())
+                .cache(ids -> properties.getPulledAuthorsTimeToLive(), e -> Duration.ZERO,
+                        properties::getPulledAuthorsTimeToLive);
+        this.fanOutFailedCounter = meterRegistry.counter(FAN_OUT_FAILED_COUNTER_NAME);
+    }
+
+    /**
+     * Writes the new article to the timelines of the followers of its author, in batches, unless the author is pulled.
+     * A failed fan-out does not fail the article creation, since the article is saved already; it is logged and counted,
+     * and the followers who were not written to miss the article in their feeds.
+     * @return the number of written entries
+     */
+    public Mono<Long> fanOut(final Article article, final User author) {
+        if (isPulled(author.getFollowersCount())) {
+            return Mono.just(0L);
+        }
+        return followRepository.findFollowerIds(author.getId())
+                .buffer(FAN_OUT_BATCH_SIZE)
+                .concatMap(followerIds -> timelineRepository.addToTimelines(followerIds, article))
+                .reduce(0L, Long::sum)
+                .onErrorResume(e -> {
+                    log.warn("article {} is not added to the timelines of the followers", article.getId(), e);
+                    fanOutFailedCounter.increment();
+                    return Mono.just(0L);
+                });
+    }
+
+    /**
+     * Adds the newest articles of the followed user to the timeline of the new follower, unless the followed user is pulled.
+     */
+    public Mono<Void> addFollow(final String followerId, final User followee) {
+        if (isPulled(followee.getFollowersCount() + 1)) {
+            return Mono.empty();
+        }
+        return timelineRepository.addAuthorArticles(followerId, followee.getId(), properties.getFollowBackfillSize()).then();
+    }
+
+    public Mono<Void> removeFollow(final String followerId, final String followeeId) {
+        return timelineRepository.removeAuthorArticles(followerId, followeeId);
+    }
+
+    public Mono<Void> removeArticle(final Article article) {
+        return timelineRepository.removeArticle(article.getId());
+    }
+
+    /**
+     * Reads a page of the feed of the reader from its timeline.
+     * If the reader follows pulled authors, the pages of the timeline and of their articles are read as deep as the offset
+     * and merged, the articles of authors who were pulled only lately being in both.
+     */
+    public Mono<List<Article>> findFeed(final User reader, final ArticleProjection projection,
+                                        @Nullable final ArticleCursor cursor, final int offset, final int limit) {
+        return findPulledAuthorIds(reader).flatMap(pulledAuthorIds -> {
+            if (pulledAuthorIds.isEmpty()) {
+                return findTimelineArticles(reader, projection, cursor, offset, limit);
+            }
+            final int depth = offset + limit;
+            return Mono.zip(findTimelineArticles(reader, projection, cursor, 0, depth),
+                            articleRepository.findNewestArticlesByAuthorIds(pulledAuthorIds, reader.getId(), projection,
+                                    cursor, 0, depth).collectList())
+                    .map(pages -> merge(pages.getT1(), pages.getT2(), offset, limit));
+        });
+    }
+
+    /**
+     * Counts the articles of the feed of the reader: the entries of its timeline, and the articles of the pulled authors it follows.
+     * The articles of authors who were pulled only lately are counted twice.
+     */
+    public Mono<Long> countFeed(final User reader) {
+        return findPulledAuthorIds(reader).flatMap(pulledAuthorIds -> {
+            final Mono<Long> timelineCount = timelineRepository.countEntries(reader.getId());
+            if (pulledAuthorIds.isEmpty()) {
+                return timelineCount;
+            }
+            return Mono.zip(timelineCount, articleCountRepository.countArticlesByAuthorIds(pulledAuthorIds), Long::sum);
+        });
+    }
+
+    private Mono<List<Article>> findTimelineArticles(final User reader, final ArticleProjection projection,
+                                                     @Nullable final ArticleCursor cursor, final int offset, final int limit) {
+        return timelineRepository.findNewestEntries(reader.getId(), cursor, offset, limit)
+                .map(TimelineEntry::getArticleId)
+                .collectList()
+                .flatMap(articleIds -> articleIds.isEmpty()
+                        ? Mono.just(List.<Article>of())
+                        : articleRepository.findArticlesByIds(articleIds, reader.getId(), projection)
+                                .sort(NEWEST_ARTICLE_ORDER)
+                                .collectList());
+    }
+
+    private Mono<List<String>> findPulledAuthorIds(final User reader) {
+        final Collection<String> followingIds = reader.getFollowingIds();
+        if (followingIds.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return pulledAuthorIds.map(ids -> followingIds.stream().filter(ids::contains).toList());
+    }
+
+    private boolean isPulled(final long followersCount) {
+        return followersCount >= properties.getFanOutMaxFollowers();
+    }
+
+    /* default */ static List<Article> merge(final List<Article> timelineArticles, final List<Article> pulledArticles,
+                                             final int offset, final int limit) {
+        final Map<String, Article> articles = new LinkedHashMap<>();
+        timelineArticles.forEach(article -> articles.put(article.getId(), article));
+        pulledArticles.forEach(article -> articles.putIfAbsent(article.getId(), article));
+        return articles.values().stream()
+                .sorted(NEWEST_ARTICLE_ORDER)
+                .skip(offset)
+                .limit(limit)
+                .toList();
+    }
+}
@@ -4,96 +4,167 @@ import com.realworld.webfluxfn.dto.request.CreateCommentRequest;
 import com.realworld.webfluxfn.dto.view.*;
 import com.realworld.webfluxfn.exception.InvalidRequestException;
 import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.entity.Comment;
+import com.realworld.webfluxfn.persistence.repository.ArticleCursor;
+import com.realworld.webfluxfn.persistence.repository.ArticleListProperties;
 import com.realworld.webfluxfn.persistence.repository.ArticleRepository;
 import com.realworld.webfluxfn.persistence.entity.User;
-import com.realworld.webfluxfn.persistence.repository.UserRepository;
+import com.realworld.webfluxfn.persistence.repository.CachedArticleCountRepository;
+import com.realworld.webfluxfn.persistence.repository.CachedUserRepository;
+import com.realworld.webfluxfn.persistence.repository.CommentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static com.realworld.webfluxfn.dto.view.ArticleView.toArticleViewForViewer;
 import static com.realworld.webfluxfn.dto.view.ProfileView.convertToProfileViewByViewerUser;
 import static com.realworld.webfluxfn.dto.view.ProfileView.toUnfollowedProfileView;
+import static java.util.stream.Collectors.toSet;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 class UserArticleService {
-
     private final ArticleRepository articleRepository;
-    private final UserRepository userRepository;
+    private final CachedUserRepository userRepository;
+    private final CommentRepository commentRepository;
+    private final ArticleListProperties articleListProperties;
+    private final CachedArticleCountRepository articleCountRepository;
+    private final ArticleMappingProperties articleMappingProperties;
 
     public Mono<MultipleArticlesView> findArticles(final String tag, final String authorName, final String favoritingUserName,
-                                                   final int offset, final int limit, final Optional<User> currentUser) {
+                                                   final int offset, final int limit, @Nullable final ArticleCursor cursor,
+                                                   final Optional<User> currentUser) {
         if (StringUtils.isEmpty(favoritingUserName)) {
-            return findArticles(tag, authorName, (User)null, offset, limit, currentUser);
+            return findArticles(tag, authorName, (User)null, offset, limit, cursor, currentUser);
         }
         return userRepository.findByUsername(favoritingUserName)
-                .flatMap(fu -> this.findArticles(tag, authorName, fu, offset, limit, currentUser));
+                .flatMap(fu -> this.findArticles(tag, authorName, fu, offset, limit, cursor, currentUser));
     }
 
     private Mono<MultipleArticlesView> findArticles(final String tag, final String authorName, final User favoritingUser,
-                                                    final int offset, final int limit, final Optional<User> currentUser) {
+                                                    final int offset, final int limit, @Nullable final ArticleCursor cursor,
+                                                    final Optional<User> currentUser) {
         if (StringUtils.isEmpty(authorName)) {
-            return this.findArticles(tag, (User) null, favoritingUser, offset, limit, currentUser);
+            return this.findArticles(tag, (User) null, favoritingUser, offset, limit, cursor, currentUser);
         }
         return userRepository.findByUsername(authorName).
-                flatMap(au -> this.findArticles(tag, au, favoritingUser, offset, limit, currentUser));
+                flatMap(au -> this.findArticles(tag, au, favoritingUser, offset, limit, cursor, currentUser));
     }
 
     private Mono<MultipleArticlesView> findArticles(final String tag, final User authorUser, final User favoritingUser,
-                                                    final int offset, final int limit, final Optional<User> currentUser) {
+                                                    final int offset, final int limit, @Nullable final ArticleCursor cursor,
+                                                    final Optional<User> currentUser) {
         final String authorUserId = (authorUser == null) ? null : authorUser.getId();
-        return articleRepository.findNewestArticlesFilteredBy(tag, authorUserId, favoritingUser, limit, offset)
-                    .flatMap(article -> this.mapToArticleView(article, currentUser))
-                    .collectList()
-                    .map(MultipleArticlesView::makeInstance);
+        final String viewerId = currentUser.map(User::getId).orElse(null);
+        return Mono.zip(articleRepository.findNewestArticlesFilteredBy(tag, authorUserId, favoritingUser, viewerId,
+                                articleListProperties.getProjection(), cursor, limit, offset).collectList(),
+                        articleCountRepository.countArticlesFilteredBy(tag, authorUserId, favoritingUser))
+                    .flatMap(page -> this.mapToMultipleArticlesView(page.getT1(), limit, page.getT2(), currentUser));
+    }
+
+    /**
+     * Streams the views of a page of articles as soon as they are mapped, instead of the view of the whole page.
+     * A user name that is not found streams nothing, as {@link #findArticles} finds nothing.
+     */
+    public Flux<ArticleView> streamArticles(final String tag, final String authorName, final String favoritingUserName,
+                                            final int offset, final int limit, @Nullable final ArticleCursor cursor,
+                                            final Optional<User> currentUser) {
+        final String viewerId = currentUser.map(User::getId).orElse(null);
+        return Mono.zip(findUserOrNone(authorName), findUserOrNone(favoritingUserName))
+                .flatMapMany(users -> streamArticleViews(articleRepository.findNewestArticlesFilteredBy(tag,
+                        users.getT1().map(User::getId).orElse(null), users.getT2().orElse(null), viewerId,
+                        articleListProperties.getProjection(), cursor, limit, offset), currentUser));
+    }
+
+    /**
+     * Maps the articles into views as they come, in chunks whose distinct authors are resolved with a single query each.
+     * At most {@link ArticleMappingProperties#getConcurrency()} chunks are resolved at once, whatever the size of the list,
+     * and the views are emitted in the order of the articles, however long each lookup takes.
+     */
+    public Flux<ArticleView> streamArticleViews(final Flux<Article> articles, final Optional<User> viewer) {
+        return articles.buffer(articleMappingProperties.getChunkSize())
+                .flatMapSequential(chunk -> mapToArticleViews(chunk, viewer), articleMappingProperties.getConcurrency());
+    }
+
+    /**
+     * Maps a page of articles into the view of the page, with the total count of the list
+     * and the cursor of the next page if the page is full.
+     * The page is mapped as {@link #streamArticleViews} does, so that large pages neither reorder nor flood the user lookups.
+     */
+    public Mono<MultipleArticlesView> mapToMultipleArticlesView(final List<Article> articles, final int limit,
+                                                                final long articlesCount, final Optional<User> viewer) {
+        return this.streamArticleViews(Flux.fromIterable(articles), viewer)
+                .collectList()
+                .map(views -> MultipleArticlesView.makeInstance(views, ArticleCursor.encodeNext(articles, limit), articlesCount));
     }
 
-    public Mono<CommentView> addComment(final String slug, final Mono<CreateCommentRequest> request, final User currentUser) {
-        return request.map(req -> req.toComment(UUID.randomUUID().toString(), currentUser.getId()))
-                        .flatMap(comment -> articleRepository
-                                .findBySlugOrFail(slug)
-                                .flatMap(article -> {
-                                    article.addComment(comment);
-                                    return articleRepository.save(article);
-                                }).thenReturn(comment))
-                .map(c -> CommentView.toCommentView(c, ProfileView.toOwnProfile(currentUser)));
+    /**
+     * Loads the author of the comment only for its view, once the comment is saved.
+     */
+    public Mono<CommentView> addComment(final String slug, final Mono<CreateCommentRequest> request, final String currentUserId) {
+        return articleRepository.findBySlugOrFail(slug)
+                .zipWith(request, (article, req) -> req.toComment(UUID.randomUUID().toString(), currentUserId, article.getId()))
+                .flatMap(commentRepository::save)
+                .flatMap(c -> userRepository.findById(currentUserId)
+                        .map(currentUser -> CommentView.toCommentView(c, ProfileView.toOwnProfile(currentUser))));
     }
 
-    public Mono<Void> deleteComment(final String commentId, final String slug, final User user) {
+    public Mono<Void> deleteComment(final String commentId, final String slug, final String userId) {
         return this.articleRepository.findBySlugOrFail(slug)
-                .flatMap(article -> Mono.justOrEmpty(article.getCommentById(commentId))
-                        .flatMap(comment -> comment.isAuthor(user)
-                                ? Mono.just(comment)
-                                : Mono.error(new InvalidRequestException("Comment", "only author can delete comment")))
-                        .flatMap(comment -> {
-                            article.deleteComment(comment);
-                            return this.articleRepository.save(article).then();
-                        })
-                );
-    }
-
-    public Mono<MultipleCommentsView> getComments(final String slug, final Optional<User> viewerUser) {
+                .flatMap(article -> this.commentRepository.findByIdAndArticleId(commentId, article.getId()))
+                .flatMap(comment -> comment.isAuthor(userId)
+                        ? Mono.just(comment)
+                        : Mono.error(new InvalidRequestException("Comment", "only author can delete comment")))
+                .flatMap(this.commentRepository::delete);
+    }
+
+    public Mono<Void> deleteComments(final Article article) {
+        return this.commentRepository.deleteByArticleId(article.getId()).then();
+    }
+
+    /**
+     * Finds a page of the article's comments, oldest first, resolving all the distinct comment authors with a single query.
+     */
+    public Mono<MultipleCommentsView> getComments(final String slug, final int offset, final int limit,
+                                                  final Optional<User> viewerUser) {
         return this.articleRepository.findBySlug(slug)
-                .zipWhen(article -> userRepository.findById(article.getAuthorId()))
-                .map(tuple -> {
-                    final Article article = tuple.getT1();
-                    final User authorUser = tuple.getT2();
-                    final ProfileView authorProfile = viewerUser
-                            .map(vu -> convertToProfileViewByViewerUser(authorUser, vu))
-                            .orElse(toUnfollowedProfileView(authorUser));
-                    final List<CommentView> commentViews = article.getComments().stream()
-                            .map(comment -> CommentView.toCommentView(comment, authorProfile))
-                            .toList();
-                    return MultipleCommentsView.makeInstance(commentViews);
-                });
+                .flatMap(article -> this.commentRepository.findOldestCommentsByArticleId(article.getId(), offset, limit)
+                        .collectList())
+                .flatMap(comments -> mapToCommentViews(comments, viewerUser))
+                .map(MultipleCommentsView::makeInstance);
+    }
+
+    private Mono<List<CommentView>> mapToCommentViews(final List<Comment> comments, final Optional<User> viewerUser) {
+        final Set<String> authorIds = comments.stream().map(Comment::getAuthorId).collect(toSet());
+        return this.userRepository.findAllById(authorIds)
+                .map(authors -> comments.stream()
+                        .filter(comment -> authors.containsKey(comment.getAuthorId()))
+                        .map(comment -> CommentView.toCommentView(comment, toProfileView(authors.get(comment.getAuthorId()), viewerUser)))
+                        .toList());
+    }
+
+    /**
+     * Maps a page of articles into views, resolving all the distinct authors of the page with a single query.
+     * The order of the given articles is kept; articles whose author no longer exists are skipped.
+     */
+    public Flux<ArticleView> mapToArticleViews(final List<Article> articles, final Optional<User> viewer) {
+        if (articles.isEmpty()) {
+            return Flux.empty();
+        }
+        return this.userRepository.findAuthorsByArticles(articles)
+                .flatMapMany(authors -> Flux.fromIterable(articles)
+                        .filter(article -> authors.containsKey(article.getAuthorId()))
+                        .map(article -> toArticleView(article, authors.get(article.getAuthorId()), viewer)));
     }
 
     public Mono<ArticleView> mapToArticleView(final Article article, final Optional<User> viewer) {
@@ -107,8 +178,35 @@ class UserArticleService {
                 .map(au -> toArticleViewForViewer(article, convertToProfileViewByViewerUser(au, user), user));
     }
 
+    /**
+     * Resolves the author and the viewer of the article with a single query, for the views of the requests
+     * which only know the viewer by id.
+     */
+    public Mono<ArticleView> mapToArticleView(final Article article, final String viewerId) {
+        return this.userRepository.findAllById(Set.of(article.getAuthorId(), viewerId))
+                .filter(users -> users.containsKey(article.getAuthorId()))
+                .map(users -> toArticleView(article, users.get(article.getAuthorId()), Optional.ofNullable(users.get(viewerId))));
+    }
+
     public Mono<ArticleView> mapToArticleView(final Article article) {
         return this.userRepository.findAuthorByArticle(article)
                 .map(author -> ArticleView.toUnfavoredArticleView(article, toUnfollowedProfileView(author)));
     }
+
+    private Mono<Optional<User>> findUserOrNone(@Nullable final String userName) {
+        if (StringUtils.isEmpty(userName)) {
+            return Mono.just(Optional.empty());
+        }
+        return userRepository.findByUsername(userName).map(Optional::of);
+    }
+
+    private static ProfileView toProfileView(final User user, final Optional<User> viewer) {
+        return viewer.map(vu -> convertToProfileViewByViewerUser(user, vu))
+                .orElseGet(() -> toUnfollowedProfileView(user));
+    }
+
+    private static ArticleView toArticleView(final Article article, final User author, final Optional<User> viewer) {
+        return viewer.map(vu -> toArticleViewForViewer(article, convertToProfileViewByViewerUser(author, vu), vu))
+                .orElseGet(() -> ArticleView.toUnfavoredArticleView(article, toUnfollowedProfileView(author)));
+    }
 }
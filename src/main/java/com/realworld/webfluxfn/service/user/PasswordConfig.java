@@ -0,0 +1,9 @@
+package com.realworld.webfluxfn.service.user;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(PasswordHashingProperties.class)
+class PasswordConfig {
+}
@@ -0,0 +1,30 @@
+package com.realworld.webfluxfn.service.user;
+
+import lombok.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@Value
+@ConfigurationProperties(prefix = "password.hashing")
+@ConstructorBinding
+public class PasswordHashingProperties {
+    /**
+     * The BCrypt cost factor of new hashes; stored hashes of another cost are rehashed on login.
+     */
+    int strength;
+
+    /**
+     * The number of threads hashing passwords at once.
+     */
+    int parallelism;
+
+    /**
+     * The number of hashings waiting for a thread, beyond which new ones are rejected.
+     * The scheduler bounds the waiting hashings of each thread, so the capacity is split evenly across the threads.
+     */
+    int queueCapacity;
+
+    public int getQueueCapacityPerThread() {
+        return Math.max(1, (queueCapacity + parallelism - 1) / parallelism);
+    }
+}
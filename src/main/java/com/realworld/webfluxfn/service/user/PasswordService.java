@@ -1,18 +1,110 @@
 package com.realworld.webfluxfn.service.user;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Hashes and verifies passwords on a scheduler of its own, because BCrypt is slow on purpose and would otherwise
+ * stall the event loop. The scheduler has a bounded number of threads and of waiting hashings; beyond those,
+ * hashings fail fast with 503 Service Unavailable and are counted, so that an overloaded server does not answer
+ * logins and signups as if it had a bug.
+ */
 @Component
 public class PasswordService {
-    private final transient PasswordEncoder encoder = new BCryptPasswordEncoder();
+    private static final String QUEUED_TIMER_NAME = "password.hashing.queued";
+    private static final String HASHING_TIMER_NAME = "password.hashing.time";
+    private static final String REJECTED_COUNTER_NAME = "password.hashing.rejected";
+    private static final String OPERATION_TAG = "operation";
+
+    private static final String BCRYPT_ID = "bcrypt";
+    private static final String BCRYPT_PREFIX = "{" + BCRYPT_ID + "}";
+
+    private final transient PasswordEncoder encoder;
+    private final int strength;
+    private final Scheduler scheduler;
+    private final Timer encodeQueuedTimer;
+    private final Timer encodeTimer;
+    private final Timer matchQueuedTimer;
+    private final Timer matchTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordService(final PasswordHashingProperties properties, final MeterRegistry meterRegistry) {
+        this.strength = properties.getStrength();
+        this.encoder = delegatingEncoder(new BCryptPasswordEncoder(strength));
+        this.scheduler = Schedulers.newBoundedElastic(
+                properties.getParallelism(), properties.getQueueCapacityPerThread(), "password-hashing");
+        this.encodeQueuedTimer = meterRegistry.timer(QUEUED_TIMER_NAME, OPERATION_TAG, "encode");
+        this.encodeTimer = meterRegistry.timer(HASHING_TIMER_NAME, OPERATION_TAG, "encode");
+        this.matchQueuedTimer = meterRegistry.timer(QUEUED_TIMER_NAME, OPERATION_TAG, "match");
+        this.matchTimer = meterRegistry.timer(HASHING_TIMER_NAME, OPERATION_TAG, "match");
+        this.rejectedCounter = meterRegistry.counter(REJECTED_COUNTER_NAME);
+    }
+
+    public Mono<String> encodePassword(final String rowPassword) {
+        return hash(() -> encoder.encode(rowPassword), encodeQueuedTimer, encodeTimer);
+    }
+
+    public Mono<Boolean> matchesRowPasswordWithEncodedPassword(final String rowPassword, final String encodedPassword) {
+        return hash(() -> encoder.matches(rowPassword, encodedPassword), matchQueuedTimer, matchTimer);
+    }
+
+    /**
+     * @return whether the password should be hashed again, because it is not hashed with the configured encoder and cost
+     */
+    public boolean needsRehash(final String encodedPassword) {
+        if (!encodedPassword.startsWith(BCRYPT_PREFIX)) {
+            return true;
+        }
+        // a BCrypt hash reads $<version>$<cost>$<salt and hash>
+        final String[] parts = encodedPassword.substring(BCRYPT_PREFIX.length()).split("\\$");
+        try {
+            return parts.length < 3 || Integer.parseInt(parts[2]) != strength;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    @PreDestroy
+    public void dispose() {
+        scheduler.dispose();
+    }
 
-    public String encodePassword(final String rowPassword) {
-        return encoder.encode(rowPassword);
+    /**
+     * New hashes are prefixed with the id of their encoder, while the hashes stored before the prefix was introduced
+     * are all BCrypt hashes, so BCrypt matches the ones without any.
+     */
+    private static PasswordEncoder delegatingEncoder(final BCryptPasswordEncoder bcrypt) {
+        final DelegatingPasswordEncoder delegatingEncoder = new DelegatingPasswordEncoder(BCRYPT_ID, Map.of(BCRYPT_ID, bcrypt));
+        delegatingEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return delegatingEncoder;
     }
 
-    public boolean matchesRowPasswordWithEncodedPassword(final String rowPassword, final String encodedPassword) {
-        return encoder.matches(rowPassword, encodedPassword);
+    private <T> Mono<T> hash(final Callable<T> hashing, final Timer queuedTimer, final Timer hashingTimer) {
+        return Mono.defer(() -> {
+            final long queuedAt = System.nanoTime();
+            return Mono.fromCallable(() -> {
+                queuedTimer.record(Duration.ofNanos(System.nanoTime() - queuedAt));
+                return hashingTimer.recordCallable(hashing);
+            }).subscribeOn(scheduler);
+        }).onErrorMap(RejectedExecutionException.class, e -> {
+            rejectedCounter.increment();
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "password hashing is saturated", e);
+        });
     }
 }
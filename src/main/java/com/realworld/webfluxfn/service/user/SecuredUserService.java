@@ -6,8 +6,10 @@ import com.realworld.webfluxfn.dto.request.UserRegistrationRequest;
 import com.realworld.webfluxfn.dto.view.UserView;
 import com.realworld.webfluxfn.persistence.entity.User;
 import com.realworld.webfluxfn.exception.InvalidRequestException;
+import com.realworld.webfluxfn.persistence.repository.CachedUserRepository;
 import com.realworld.webfluxfn.persistence.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
@@ -18,10 +20,12 @@ import static java.util.Optional.ofNullable;
 
 @Component
 @RequiredArgsConstructor
+@Slf4j
 class SecuredUserService {
     private static final String ALREADY_IN_USE = "already in use";
 
     private final UserRepository userRepository;
+    private final CachedUserRepository cachedUserRepository;
     private final PasswordService passwordService;
     private final UserTokenProvider tokenProvider;
 
@@ -30,12 +34,12 @@ class SecuredUserService {
             final var email = m.getEmail();
             final var password = m.getPassword();
             return userRepository.findByEmailOrFail(email)
-                .flatMap(user -> {
-                    final String encodedPassword = user.getEncodedPassword();
-                    return passwordService.matchesRowPasswordWithEncodedPassword(password, encodedPassword)
-                            ? Mono.just(user)
-                            : Mono.error(new InvalidRequestException("Password", "invalid"));
-                }).map(this::createAuthenticationResponse);
+                .flatMap(user -> passwordService.matchesRowPasswordWithEncodedPassword(password, user.getEncodedPassword())
+                        .flatMap(matches -> matches
+                                ? Mono.just(user)
+                                : Mono.error(new InvalidRequestException("Password", "invalid"))))
+                .flatMap(user -> rehashPasswordIfNeeded(password, user))
+                .map(this::createAuthenticationResponse);
         });
     }
 
@@ -43,11 +47,11 @@ class SecuredUserService {
         final User rawUser = request.toRawUser();
         return this.applyUsernameFromProvided(request.getUsername(), rawUser, true)
                 .flatMap(u-> this.applyEmailFromProvided(request.getEmail(), u, true))
-                .flatMap(u -> {
-                    final String encodedPassword = passwordService.encodePassword(request.getPassword());
+                .flatMap(u -> passwordService.encodePassword(request.getPassword()))
+                .flatMap(encodedPassword -> {
                     final String id = UUID.randomUUID().toString();
                     final User userToCreate = request.toUser(encodedPassword, id);
-                    return userRepository.save(userToCreate)
+                    return userRepository.insert(userToCreate)
                             .map(this::createAuthenticationResponse);
                 });
     }
@@ -56,11 +60,11 @@ class SecuredUserService {
         return request.flatMap(m -> {
             ofNullable(m.getBio()).ifPresent(userToUpdate::setBio);
             ofNullable(m.getImage()).ifPresent(userToUpdate::setImage);
-            ofNullable(m.getPassword())
-                    .ifPresent(password -> userToUpdate.setEncodedPassword(passwordService.encodePassword(password)));
             return applyUsernameFromProvided(m.getUsername(), userToUpdate, false)
-                    .flatMap(u -> applyEmailFromProvided(m.getEmail(), u, false));
-        }).flatMap(userRepository::save);
+                    .flatMap(u -> applyEmailFromProvided(m.getEmail(), u, false))
+                    .flatMap(u -> applyPasswordFromProvided(m.getPassword(), u));
+        }).flatMap(userRepository::updateProfile)
+                .doOnNext(cachedUserRepository::evict);
     }
 
     /* default */ Mono<User> applyUsernameFromProvided(final String userName, final User user, final boolean isSignUp) {
@@ -99,6 +103,39 @@ class SecuredUserService {
                 });
     }
 
+    /**
+     * Migrates the password of a logged in user to the configured hashing, since only then is the raw password known.
+     * A failed migration does not fail the login; it is tried again on the next one.
+     */
+    private Mono<User> rehashPasswordIfNeeded(final String password, final User user) {
+        final String encodedPassword = user.getEncodedPassword();
+        if (!passwordService.needsRehash(encodedPassword)) {
+            return Mono.just(user);
+        }
+        return passwordService.encodePassword(password)
+                .flatMap(rehashedPassword -> userRepository.replaceEncodedPassword(user.getId(), encodedPassword, rehashedPassword)
+                        .doOnNext(replaced -> cachedUserRepository.evict(user)))
+                .thenReturn(user)
+                .onErrorResume(e -> {
+                    log.warn("password of user {} is not rehashed", user.getId(), e);
+                    return Mono.just(user);
+                });
+    }
+
+    /**
+     * Hashes the password only once the other changes are validated, since hashing is the expensive part.
+     */
+    private Mono<User> applyPasswordFromProvided(final String password, final User user) {
+        if (password == null) {
+            return Mono.just(user);
+        }
+        return passwordService.encodePassword(password)
+                .map(encodedPassword -> {
+                    user.setEncodedPassword(encodedPassword);
+                    return user;
+                });
+    }
+
     private UserView createAuthenticationResponse(final User user) {
         final var token = tokenProvider.getToken(user.getId());
         return UserView.fromUserAndToken(user, token);
@@ -6,7 +6,10 @@ import com.realworld.webfluxfn.dto.request.UserRegistrationRequest;
 import com.realworld.webfluxfn.dto.view.ProfileView;
 import com.realworld.webfluxfn.dto.view.UserView;
 import com.realworld.webfluxfn.persistence.entity.User;
+import com.realworld.webfluxfn.persistence.repository.CachedUserRepository;
+import com.realworld.webfluxfn.persistence.repository.FollowRepository;
 import com.realworld.webfluxfn.persistence.repository.UserRepository;
+import com.realworld.webfluxfn.service.article.TimelineService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -19,14 +22,17 @@ public class UserService {
 
     private final SecuredUserService securedUserService;
     private final UserRepository userRepository;
+    private final CachedUserRepository cachedUserRepository;
+    private final FollowRepository followRepository;
+    private final TimelineService timelineService;
 
     public Mono<ProfileView> getProfile(final String profileUserName, final User viewerUser) {
-        return userRepository.findByUsernameOrFail(profileUserName)
+        return cachedUserRepository.findByUsernameOrFail(profileUserName)
                 .map(user -> ProfileView.convertToProfileViewByViewerUser(user, viewerUser));
     }
 
     public Mono<ProfileView> getProfile(final String profileUserName) {
-        return userRepository.findByUsernameOrFail(profileUserName)
+        return cachedUserRepository.findByUsernameOrFail(profileUserName)
                 .map(ProfileView::toUnfollowedProfileView);
     }
 
@@ -43,21 +49,43 @@ public class UserService {
                 .map(it -> UserView.fromUserAndToken(it, userSession.token()));
     }
 
-    public Mono<ProfileView> follow(final String profileUserName, final User follower) {
-        return userRepository.findByUsernameOrFail(profileUserName)
-                .flatMap(userToFollow -> {
-                    follower.follow(userToFollow);
-                    return userRepository.save(follower).thenReturn(userToFollow);
-                })
+    /**
+     * Follows the user with an atomic update of the follower, then indexes the follow, and counts it on the followed user
+     * only if the follow is indexed by this call. The newest articles of the user are then added to the feed of the follower.
+     * Every step is idempotent and runs whether the follower was following the user or not, so that following again
+     * completes a follow that failed halfway.
+     */
+    public Mono<ProfileView> follow(final String profileUserName, final String followerId) {
+        return cachedUserRepository.findByUsernameOrFail(profileUserName)
+                .flatMap(userToFollow -> userRepository.addFollowingId(followerId, userToFollow.getId())
+                        .then(followRepository.addFollow(followerId, userToFollow.getId()))
+                        .flatMap(added -> added
+                                ? userRepository.incrementFollowersCount(userToFollow.getId(), 1)
+                                : Mono.empty())
+                        .then(timelineService.addFollow(followerId, userToFollow))
+                        .doFinally(signal -> evictFollow(followerId, userToFollow))
+                        .thenReturn(userToFollow))
                 .map(ProfileView::toFollowedProfileView);
     }
 
-    public Mono<ProfileView> unfollow(final String profileUserName, final User follower) {
-        return userRepository.findByUsernameOrFail(profileUserName)
-                .flatMap(userToUnfollow -> {
-                    follower.unfollow(userToUnfollow);
-                    return userRepository.save(follower).thenReturn(userToUnfollow);
-                })
+    /**
+     * Unfollows the user like {@link #follow(String, String)} follows it, every step being idempotent as well.
+     */
+    public Mono<ProfileView> unfollow(final String profileUserName, final String followerId) {
+        return cachedUserRepository.findByUsernameOrFail(profileUserName)
+                .flatMap(userToUnfollow -> userRepository.removeFollowingId(followerId, userToUnfollow.getId())
+                        .then(followRepository.removeFollow(followerId, userToUnfollow.getId()))
+                        .flatMap(removed -> removed
+                                ? userRepository.incrementFollowersCount(userToUnfollow.getId(), -1)
+                                : Mono.empty())
+                        .then(timelineService.removeFollow(followerId, userToUnfollow.getId()))
+                        .doFinally(signal -> evictFollow(followerId, userToUnfollow))
+                        .thenReturn(userToUnfollow))
                 .map(ProfileView::toUnfollowedProfileView);
     }
+
+    private void evictFollow(final String followerId, final User followee) {
+        cachedUserRepository.evict(followerId);
+        cachedUserRepository.evict(followee);
+    }
 }
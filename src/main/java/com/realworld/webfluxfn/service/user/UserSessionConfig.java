@@ -0,0 +1,17 @@
+package com.realworld.webfluxfn.service.user;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.server.WebFilter;
+
+@Configuration
+class UserSessionConfig {
+
+    /**
+     * Declared as a bean rather than a component, so web slice tests do not pull in the user repository.
+     */
+    @Bean
+    /* default */ WebFilter userSessionWebFilter(final UserSessionProvider userSessionProvider) {
+        return new UserSessionWebFilter(userSessionProvider);
+    }
+}
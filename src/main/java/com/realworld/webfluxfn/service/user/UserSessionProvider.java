@@ -1,7 +1,7 @@
 package com.realworld.webfluxfn.service.user;
 
 import com.realworld.webfluxfn.persistence.entity.User;
-import com.realworld.webfluxfn.persistence.repository.UserRepository;
+import com.realworld.webfluxfn.persistence.repository.CachedUserRepository;
 import com.realworld.webfluxfn.security.TokenPrincipal;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
@@ -13,23 +13,44 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class UserSessionProvider {
 
-    private final transient UserRepository userRepository;
+    /**
+     * Reactor context key of the per-exchange memoized user session, see {@link UserSessionWebFilter}.
+     */
+    /* default */ static final String USER_SESSION_CONTEXT_KEY = UserSession.class.getName();
+
+    private final transient CachedUserRepository userRepository;
 
     public Mono<User> getCurrentUserOrEmpty() {
         return getCurrentUserSessionOrEmpty().map(UserSession::user);
     }
 
+    /**
+     * Reads the id of the authenticated user from its token, without loading the user.
+     */
+    public Mono<String> getCurrentUserIdOrEmpty() {
+        return getCurrentTokenPrincipalOrEmpty().map(TokenPrincipal::userId);
+    }
+
     public Mono<UserSession> getCurrentUserSessionOrEmpty() {
+        return Mono.deferContextual(context -> context.<Mono<UserSession>>getOrEmpty(USER_SESSION_CONTEXT_KEY)
+                .orElseGet(this::resolveUserSession));
+    }
+
+    /* default */ Mono<UserSession> resolveUserSession() {
+        return getCurrentTokenPrincipalOrEmpty()
+                .flatMap(tokenPrincipal -> userRepository
+                        .findById(tokenPrincipal.userId())
+                        .map(user -> new UserSession(user, tokenPrincipal.token())));
+    }
+
+    private Mono<TokenPrincipal> getCurrentTokenPrincipalOrEmpty() {
         return ReactiveSecurityContextHolder.getContext()
                 .flatMap(context -> {
                     final Authentication authentication = context.getAuthentication();
                     if (authentication == null) {
                         return Mono.empty();
                     }
-                    final var tokenPrincipal = (TokenPrincipal) authentication.getPrincipal();
-                    return userRepository
-                            .findById(tokenPrincipal.userId())
-                            .map(user -> new UserSession(user, tokenPrincipal.token()));
+                    return Mono.just((TokenPrincipal) authentication.getPrincipal());
                 });
     }
 
@@ -0,0 +1,26 @@
+package com.realworld.webfluxfn.service.user;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import static com.realworld.webfluxfn.service.user.UserSessionProvider.USER_SESSION_CONTEXT_KEY;
+
+/**
+ * Resolves the authenticated user at most once per exchange: the lookup is memoized in the Reactor context,
+ * so every {@link UserSessionProvider} call of the same request shares a single repository read.
+ */
+@RequiredArgsConstructor
+class UserSessionWebFilter implements WebFilter {
+
+    private final UserSessionProvider userSessionProvider;
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        return chain.filter(exchange)
+                .contextWrite(context -> context.put(USER_SESSION_CONTEXT_KEY,
+                        userSessionProvider.resolveUserSession().cache()));
+    }
+}
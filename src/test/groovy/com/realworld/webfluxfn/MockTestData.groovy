@@ -33,14 +33,14 @@ class MockTestData {
                 .following(true).build()
     }
 
-    static Article makeArticle(String suffix, User authorUser, List<String> tags, List<Comment> comments, List<String> favoritingUserIds) {
+    static Article makeArticle(String suffix, User authorUser, List<String> tags, List<String> favoritingUserIds) {
         return new Article(
                 "generatedSlug"+suffix, "title"+suffix,
                 "description"+suffix,"body"+suffix,
                 Instant.parse("2007-12-03T10:15:30.00Z"),
                 Instant.parse("2007-12-03T10:15:30.01Z"),
                 authorUser.getId(),
-                tags, comments, favoritingUserIds)
+                tags, favoritingUserIds, null)
     }
     static ArticleView makeArticleView(Article baseArticle, ProfileView authorUserProfile) {
         return ArticleView.builder()
@@ -83,8 +83,8 @@ class MockTestData {
     public static final UserView CURRENT_USER_VIEW = makeUserView(CURRENT_USER, "current")
     public static final ProfileView CURRENT_USER_PROFILE = makeUserProfile(CURRENT_USER)
 
-    public static final Article ARTICLE_1 = makeArticle("1", AUTHOR_USER, ["tag11", "tag12", "tag13"], null, null)
-    public static final Article ARTICLE_2 = makeArticle("2", AUTHOR_USER, ["tag21", "tag22", "tag23"], null, null)
+    public static final Article ARTICLE_1 = makeArticle("1", AUTHOR_USER, ["tag11", "tag12", "tag13"], null)
+    public static final Article ARTICLE_2 = makeArticle("2", AUTHOR_USER, ["tag21", "tag22", "tag23"], null)
 
     public static final ArticleView ARTICLE_VIEW_1 = makeArticleView(ARTICLE_1, AUTHOR_USER_PROFILE)
     public static final ArticleView ARTICLE_VIEW_2 = makeArticleView(ARTICLE_2, AUTHOR_USER_PROFILE)
@@ -1,6 +1,7 @@
 package com.realworld.webfluxfn.api
 
 
+import com.realworld.webfluxfn.persistence.repository.ArticleCursor
 import com.realworld.webfluxfn.MockTestData
 import com.realworld.webfluxfn.dto.request.CreateArticleRequest
 import com.realworld.webfluxfn.dto.view.MultipleArticlesView
@@ -9,10 +10,17 @@ import com.realworld.webfluxfn.dto.view.TagListView
 import com.realworld.webfluxfn.persistence.entity.Tag
 import com.realworld.webfluxfn.service.user.UserSessionProvider
 import com.realworld.webfluxfn.service.article.ArticleService
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.core.ParameterizedTypeReference
+import org.springframework.http.MediaType
+import org.springframework.http.codec.ServerSentEvent
 import org.spockframework.spring.SpringBean
 import org.springframework.test.web.reactive.server.WebTestClient
 import org.springframework.web.reactive.function.server.RouterFunctions
+import reactor.core.publisher.Flux
 import reactor.core.publisher.Mono
+import reactor.test.StepVerifier
 import spock.lang.Specification
 import spock.lang.Title
 import spock.lang.Unroll
@@ -31,7 +39,8 @@ class ArticleHandlerTest extends Specification {
     private final UserSessionProvider userSessionProvider = Mock()
 
     @SpringBean
-    private final ArticleHandler articleHandler = new ArticleHandler(articleService, userSessionProvider)
+    private final ArticleHandler articleHandler = new ArticleHandler(articleService, userSessionProvider,
+            new PageParameters(new PagingProperties(100, 10000), new SimpleMeterRegistry()))
 
     void setup() {
     }
@@ -88,7 +97,7 @@ class ArticleHandlerTest extends Specification {
 
         then: ''
         1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.just(MockTestData.CURRENT_USER)
-        1 * articleService.findArticles(tag, authorName, username, offset, limit, Optional.of(MockTestData.CURRENT_USER))
+        1 * articleService.findArticles(tag, authorName, username, offset, limit, null, Optional.of(MockTestData.CURRENT_USER))
                 >> Mono.just(MultipleArticlesView.makeInstance([MockTestData.ARTICLE_VIEW_1, MockTestData.ARTICLE_VIEW_2]))
         result.expectStatus().isOk()
         result.expectBody()
@@ -127,7 +136,7 @@ class ArticleHandlerTest extends Specification {
 
         then: 'the article service looks up the feed for the current user'
         1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.just(MockTestData.CURRENT_USER)
-        1 * articleService.feed(offset, limit, MockTestData.CURRENT_USER)
+        1 * articleService.feed(offset, limit, null, MockTestData.CURRENT_USER)
                 >> Mono.just(MultipleArticlesView.makeInstance([MockTestData.ARTICLE_VIEW_1, MockTestData.ARTICLE_VIEW_2]))
         result.expectStatus().isOk()
         result.expectBody()
@@ -152,6 +161,103 @@ class ArticleHandlerTest extends Specification {
         ""                       || 0       | 20
     }
 
+    def "test Feed after a cursor"() {
+        given: 'the cursor returned with the previous page'
+        ArticleCursor cursor = ArticleCursor.of(MockTestData.ARTICLE_1)
+        String nextCursor = ArticleCursor.of(MockTestData.ARTICLE_2).encode()
+
+        when: 'calls api for the next page of the feed'
+        String testingPath = PATH_PREFIX + "/articles/feed"
+        var client = WebTestClient
+                .bindToRouterFunction(RouterFunctions.route(GET(testingPath), articleHandler::feed))
+                .configureClient().build()
+        var result = client.get().uri(testingPath + "?limit=1&cursor=" + cursor.encode()).exchange()
+
+        then: 'the article service looks up the page after the cursor, and the cursor of the next page is returned'
+        1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.just(MockTestData.CURRENT_USER)
+        1 * articleService.feed(0, 1, cursor, MockTestData.CURRENT_USER)
+                >> Mono.just(MultipleArticlesView.makeInstance([MockTestData.ARTICLE_VIEW_2], nextCursor))
+        result.expectStatus().isOk()
+        result.expectBody()
+                .jsonPath('$.articles[0].slug').isEqualTo(MockTestData.ARTICLE_VIEW_2.getSlug())
+                .jsonPath('$.nextCursor').isEqualTo(nextCursor)
+    }
+
+    def "test StreamArticles writes each article as a line of JSON"() {
+        when: 'calls api for the articles of a tag as newline delimited JSON'
+        String testingPath = PATH_PREFIX + "/articles"
+        var client = WebTestClient
+                .bindToRouterFunction(RouterFunctions.route(GET(testingPath), articleHandler::streamArticles))
+                .configureClient().build()
+        var result = client.get().uri(testingPath + "?tag=tag1&limit=2").accept(MediaType.APPLICATION_NDJSON).exchange()
+
+        then: 'the article service streams the articles, even without a current user'
+        1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.empty()
+        1 * articleService.streamArticles("tag1", null, null, 0, 2, null, Optional.empty())
+                >> Flux.just(MockTestData.ARTICLE_VIEW_1, MockTestData.ARTICLE_VIEW_2)
+        result.expectStatus().isOk()
+        result.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+        result.expectBody(String).value(body -> {
+            List<String> lines = body.readLines()
+            assert lines.size() == 2
+            assert new ObjectMapper().readTree(lines[0]).get("slug").asText() == MockTestData.ARTICLE_VIEW_1.getSlug()
+            assert new ObjectMapper().readTree(lines[1]).get("slug").asText() == MockTestData.ARTICLE_VIEW_2.getSlug()
+        })
+    }
+
+    def "test StreamFeedPage writes each article of the feed as a line of JSON"() {
+        when: 'calls api for the feed of current user as newline delimited JSON'
+        String testingPath = PATH_PREFIX + "/articles/feed"
+        var client = WebTestClient
+                .bindToRouterFunction(RouterFunctions.route(GET(testingPath), articleHandler::streamFeedPage))
+                .configureClient().build()
+        var result = client.get().uri(testingPath + "?offset=1").accept(MediaType.APPLICATION_NDJSON).exchange()
+
+        then: 'the article service streams the page of the feed'
+        1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.just(MockTestData.CURRENT_USER)
+        1 * articleService.streamFeedPage(1, 20, null, MockTestData.CURRENT_USER) >> Flux.just(MockTestData.ARTICLE_VIEW_2)
+        result.expectStatus().isOk()
+        result.expectBody(String).value(body -> {
+            assert new ObjectMapper().readTree(body.readLines()[0]).get("slug").asText() == MockTestData.ARTICLE_VIEW_2.getSlug()
+        })
+    }
+
+    def "test StreamFeed sends the new articles as events"() {
+        when: 'calls api for the stream of the feed of current user'
+        String testingPath = PATH_PREFIX + "/articles/feed/stream"
+        var client = WebTestClient
+                .bindToRouterFunction(RouterFunctions.route(GET(testingPath), articleHandler::streamFeed))
+                .configureClient().build()
+        var result = client.get().uri(testingPath).accept(MediaType.TEXT_EVENT_STREAM).exchange()
+
+        then: 'the new articles of the feed are streamed as article events'
+        1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.just(MockTestData.CURRENT_USER)
+        1 * articleService.streamFeed(MockTestData.CURRENT_USER) >> Flux.just(MockTestData.ARTICLE_VIEW_1)
+        result.expectStatus().isOk()
+        result.expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+        StepVerifier.create(result.returnResult(new ParameterizedTypeReference<ServerSentEvent<Map<String, Map<String, Object>>>>() {})
+                        .getResponseBody())
+                .assertNext(event -> {
+                    assert event.event() == "article"
+                    assert event.data().get("article").get("slug") == MockTestData.ARTICLE_VIEW_1.getSlug()
+                })
+                .thenCancel().verify()
+    }
+
+    def "test StreamFeed without a current user"() {
+        when: 'calls api for the stream of the feed without a token'
+        String testingPath = PATH_PREFIX + "/articles/feed/stream"
+        var client = WebTestClient
+                .bindToRouterFunction(RouterFunctions.route(GET(testingPath), articleHandler::streamFeed))
+                .configureClient().build()
+        var result = client.get().uri(testingPath).exchange()
+
+        then: 'the stream is unauthorized'
+        1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.empty()
+        0 * articleService.streamFeed(_)
+        result.expectStatus().isUnauthorized()
+    }
+
     def "test GetArticle success"() {
         given: 'the slug of an article'
         String articleSlug = "articleSlug"
@@ -218,8 +324,8 @@ class ArticleHandlerTest extends Specification {
         var result = client.delete().uri(testingPath + articleSlug).exchange()
 
         then: ''
-        1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.just(MockTestData.CURRENT_USER)
-        1 * articleService.deleteArticle(articleSlug, MockTestData.CURRENT_USER) >> Mono.just(MockTestData.ARTICLE_1)
+        1 * userSessionProvider.getCurrentUserIdOrEmpty() >> Mono.just(MockTestData.CURRENT_USER.getId())
+        1 * articleService.deleteArticle(articleSlug, MockTestData.CURRENT_USER.getId()) >> Mono.just(MockTestData.ARTICLE_1)
         result.expectStatus().isOk()
     }
 
@@ -236,7 +342,7 @@ class ArticleHandlerTest extends Specification {
 
         then: ''
         1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.just(MockTestData.CURRENT_USER)
-        1 * articleService.getComments(articleSlug, Optional.of(MockTestData.CURRENT_USER)) >>
+        1 * articleService.getComments(articleSlug, 0, 20, Optional.of(MockTestData.CURRENT_USER)) >>
                 Mono.just(MultipleCommentsView.makeInstance([MockTestData.COMMENT_VIEW_11, MockTestData.COMMENT_VIEW_12]))
         result.expectStatus().isOk()
         result.expectBody()
@@ -266,8 +372,8 @@ class ArticleHandlerTest extends Specification {
         var result = client.post().uri(testingPath + articleSlug + "/comments").bodyValue(jsonStr).exchange()
 
         then: ''
-        1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.just(MockTestData.CURRENT_USER)
-        1 * articleService.addComment(articleSlug, _, MockTestData.CURRENT_USER) >> Mono.just(MockTestData.COMMENT_VIEW_11)
+        1 * userSessionProvider.getCurrentUserIdOrEmpty() >> Mono.just(MockTestData.CURRENT_USER.getId())
+        1 * articleService.addComment(articleSlug, _, MockTestData.CURRENT_USER.getId()) >> Mono.just(MockTestData.COMMENT_VIEW_11)
         result.expectStatus().isOk()
         result.expectBody()
                 .jsonPath('$.comment.id').isEqualTo(MockTestData.COMMENT_VIEW_11.getId())
@@ -291,8 +397,8 @@ class ArticleHandlerTest extends Specification {
         var result = client.delete().uri(testingPath + articleSlug + "/comments/" + commentId).exchange()
 
         then: ''
-        1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.just(MockTestData.CURRENT_USER)
-        1 * articleService.deleteComment(commentId, articleSlug, MockTestData.CURRENT_USER) >> Mono.just(MockTestData.COMMENT_11)
+        1 * userSessionProvider.getCurrentUserIdOrEmpty() >> Mono.just(MockTestData.CURRENT_USER.getId())
+        1 * articleService.deleteComment(commentId, articleSlug, MockTestData.CURRENT_USER.getId()) >> Mono.just(MockTestData.COMMENT_11)
         result.expectStatus().isOk()
     }
 
@@ -308,9 +414,9 @@ class ArticleHandlerTest extends Specification {
         var result = client.post().uri(testingPath + articleSlug + "/favorite").exchange()
 
         then: 'api calls favoriteArticle of article service to set the article favorited'
-        1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.just(MockTestData.CURRENT_USER)
+        1 * userSessionProvider.getCurrentUserIdOrEmpty() >> Mono.just(MockTestData.CURRENT_USER.getId())
         MockTestData.ARTICLE_VIEW_1.setFavorited(true)
-        1 * articleService.favoriteArticle(articleSlug, MockTestData.CURRENT_USER) >> Mono.just(MockTestData.ARTICLE_VIEW_1)
+        1 * articleService.favoriteArticle(articleSlug, MockTestData.CURRENT_USER.getId()) >> Mono.just(MockTestData.ARTICLE_VIEW_1)
         result.expectStatus().isOk()
         result.expectBody()
                 .jsonPath('$.article.title').isEqualTo(MockTestData.ARTICLE_VIEW_1.getTitle())
@@ -332,9 +438,9 @@ class ArticleHandlerTest extends Specification {
         var result = client.delete().uri(testingPath + articleSlug + "/favorite").exchange()
 
         then: ''
-        1 * userSessionProvider.getCurrentUserOrEmpty() >> Mono.just(MockTestData.CURRENT_USER)
+        1 * userSessionProvider.getCurrentUserIdOrEmpty() >> Mono.just(MockTestData.CURRENT_USER.getId())
         MockTestData.ARTICLE_VIEW_1.setFavorited(false)
-        1 * articleService.unfavoriteArticle(articleSlug, MockTestData.CURRENT_USER) >> Mono.just(MockTestData.ARTICLE_VIEW_1)
+        1 * articleService.unfavoriteArticle(articleSlug, MockTestData.CURRENT_USER.getId()) >> Mono.just(MockTestData.ARTICLE_VIEW_1)
         result.expectStatus().isOk()
         result.expectBody()
                 .jsonPath('$.article.title').isEqualTo(MockTestData.ARTICLE_VIEW_1.getTitle())
@@ -353,8 +459,8 @@ class ArticleHandlerTest extends Specification {
         var result = client.get().uri(testingPath).exchange()
 
         then: 'onc call to the current user session and the user in the response'
-        1 * articleService.getTags()
-                >> Mono.just(TagListView.makeInstance([new Tag("1", "tag1"), new Tag("2", "tag2"), new Tag("3", "tag3")]))
+        1 * articleService.getTagListJson() >> new ObjectMapper().writeValueAsBytes(
+                TagListView.makeInstance([new Tag("1", "tag1", 3), new Tag("2", "tag2", 2), new Tag("3", "tag3", 1)]))
         result.expectStatus().isOk()
         result.expectBody()
                 .jsonPath('$.tags').value(v -> {
@@ -364,4 +470,52 @@ class ArticleHandlerTest extends Specification {
             return lv.get(0) == 'tag1' && lv.get(2) == 'tag3'
         })
     }
+
+    def "test retrieve the most used tags"() {
+        when: 'call the api for the two most used tags'
+        String testingPath = PATH_PREFIX + "/tags"
+        var client = WebTestClient
+                .bindToRouterFunction(RouterFunctions.route(GET(testingPath), articleHandler::getTags))
+                .configureClient().build()
+        var result = client.get().uri(testingPath + "?limit=2").exchange()
+
+        then: 'the ranked tags are in the response'
+        1 * articleService.getTags(2) >> Mono.just(TagListView.makeInstance([new Tag("1", "tag1", 3), new Tag("2", "tag2", 2)]))
+        0 * articleService.getTagListJson()
+        result.expectStatus().isOk()
+        result.expectBody()
+                .jsonPath('$.tags[0]').isEqualTo('tag1')
+                .jsonPath('$.tags[1]').isEqualTo('tag2')
+                .jsonPath('$.tags.length()').isEqualTo(2)
+    }
+
+    def "test retrieve the most used tags within the maximum limit"() {
+        when: 'call the api for more tags than the maximum limit'
+        String testingPath = PATH_PREFIX + "/tags"
+        var client = WebTestClient
+                .bindToRouterFunction(RouterFunctions.route(GET(testingPath), articleHandler::getTags))
+                .configureClient().build()
+        var result = client.get().uri(testingPath + "?limit=1000").exchange()
+
+        then: 'the limit is lowered to the maximum'
+        1 * articleService.getTags(100) >> Mono.just(TagListView.makeInstance([new Tag("1", "tag1", 3)]))
+        result.expectStatus().isOk()
+    }
+
+    @Unroll
+    def "test retrieve the most used tags rejects the limit #uLimit"() {
+        when: 'call the api with an invalid limit'
+        String testingPath = PATH_PREFIX + "/tags"
+        var client = WebTestClient
+                .bindToRouterFunction(RouterFunctions.route(GET(testingPath), articleHandler::getTags))
+                .configureClient().build()
+        client.get().uri(testingPath + "?limit=" + uLimit).exchange()
+
+        then: 'the tags are not read'
+        0 * articleService.getTags(_)
+        0 * articleService.getTagListJson()
+
+        where:
+        uLimit << ["abc", "0", "-1"]
+    }
 }
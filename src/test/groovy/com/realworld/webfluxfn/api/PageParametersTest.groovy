@@ -0,0 +1,65 @@
+package com.realworld.webfluxfn.api
+
+import com.realworld.webfluxfn.exception.InvalidRequestException
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.mock.web.reactive.function.server.MockServerRequest
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class PageParametersTest extends Specification {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    private final PageParameters pageParameters = new PageParameters(new PagingProperties(100, 1000), meterRegistry)
+
+    @Unroll
+    def "test Limit #uLimit is read as #expectedLimit"() {
+        given: "a request with the limit"
+        MockServerRequest request = makeRequest(["limit": uLimit])
+
+        expect: "the limit within the maximum page size, the larger ones being counted"
+        pageParameters.limit(request) == expectedLimit
+        meterRegistry.counter("api.paging.clamped").count() == expectedClamped
+
+        where:
+        uLimit   || expectedLimit | expectedClamped
+        null     || 20            | 0
+        "1"      || 1             | 0
+        "100"    || 100           | 0
+        "100000" || 100           | 1
+    }
+
+    @Unroll
+    def "test Offset #uOffset is read as #expectedOffset"() {
+        expect: "the offset within the maximum"
+        pageParameters.offset(makeRequest(["offset": uOffset])) == expectedOffset
+
+        where:
+        uOffset || expectedOffset
+        null    || 0
+        "1000"  || 1000
+    }
+
+    @Unroll
+    def "test #uName #uValue is rejected"() {
+        when: "the parameter is read"
+        MockServerRequest request = makeRequest([(uName): uValue])
+        uName == "limit" ? pageParameters.limit(request) : pageParameters.offset(request)
+
+        then: "the request is invalid"
+        InvalidRequestException e = thrown()
+        e.getSubject() == expectedSubject
+
+        where:
+        uName    | uValue || expectedSubject
+        "limit"  | "0"    || "Limit"
+        "limit"  | "many" || "Limit"
+        "offset" | "-1"   || "Offset"
+        "offset" | "1001" || "Offset"
+        "offset" | "1e3"  || "Offset"
+    }
+
+    private static MockServerRequest makeRequest(final Map<String, String> queryParams) {
+        MockServerRequest.Builder builder = MockServerRequest.builder()
+        queryParams.findAll { it.value != null }.each { builder.queryParam(it.key, it.value) }
+        return builder.build()
+    }
+}
@@ -178,9 +178,9 @@ class UserHandlerTest extends Specification {
         var result= client.post().uri(testingPath + profileUserName + "/follow").exchange()
 
         then: 'the author is updated as followed and updated profile is in the response'
-        1 * userSessionProvider.getCurrentUserOrEmpty()  >> Mono.just(currentUser)
+        1 * userSessionProvider.getCurrentUserIdOrEmpty()  >> Mono.just(currentUser.getId())
         currentUserProfile.setFollowing(true)
-        1 * userService.follow(profileUserName, currentUser) >> Mono.just(currentUserProfile)
+        1 * userService.follow(profileUserName, currentUser.getId()) >> Mono.just(currentUserProfile)
         result.expectStatus().isOk()
         result.expectBody()
                 .jsonPath('$.profile.username').isEqualTo(currentUserProfile.getUsername())
@@ -203,9 +203,9 @@ class UserHandlerTest extends Specification {
         var result= client.delete().uri(testingPath + profileUserName + "/follow").exchange()
 
         then: 'the author is updated as unfollowed and updated profile is in the response'
-        1 * userSessionProvider.getCurrentUserOrEmpty()  >> Mono.just(currentUser)
+        1 * userSessionProvider.getCurrentUserIdOrEmpty()  >> Mono.just(currentUser.getId())
         currentUserProfile.setFollowing(false)
-        1 * userService.unfollow(profileUserName, currentUser) >> Mono.just(currentUserProfile)
+        1 * userService.unfollow(profileUserName, currentUser.getId()) >> Mono.just(currentUserProfile)
         result.expectStatus().isOk()
         result.expectBody()
                 .jsonPath('$.profile.username').isEqualTo(currentUserProfile.getUsername())
@@ -0,0 +1,42 @@
+package com.realworld.webfluxfn.persistence.repository
+
+import com.realworld.webfluxfn.MockTestData
+import com.realworld.webfluxfn.exception.InvalidRequestException
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.Instant
+
+class ArticleCursorTest extends Specification {
+
+    def "test Decode restores the encoded cursor"() {
+        given: "a cursor of an article"
+        ArticleCursor cursor = new ArticleCursor(Instant.parse("2007-12-03T10:15:30.01Z"), "id:with:separators")
+
+        when: "the cursor is encoded then decoded"
+        ArticleCursor decoded = ArticleCursor.decode(cursor.encode())
+
+        then: "the same position comes back"
+        decoded == cursor
+    }
+
+    def "test EncodeNext points after the last article of a full page"() {
+        expect:
+        ArticleCursor.encodeNext([MockTestData.ARTICLE_1, MockTestData.ARTICLE_2], 2) == ArticleCursor.of(MockTestData.ARTICLE_2).encode()
+        ArticleCursor.encodeNext([MockTestData.ARTICLE_1, MockTestData.ARTICLE_2], 3) == null
+        ArticleCursor.encodeNext([], 2) == null
+    }
+
+    @Unroll
+    def "test Decode rejects #encoded"() {
+        when: "an invalid cursor is decoded"
+        ArticleCursor.decode(encoded)
+
+        then: "the request is invalid"
+        thrown(InvalidRequestException)
+
+        where:
+        encoded << ["not base64!", Base64.getUrlEncoder().encodeToString("no separator".getBytes()),
+                    Base64.getUrlEncoder().encodeToString("NaN:id".getBytes())]
+    }
+}
@@ -0,0 +1,44 @@
+package com.realworld.webfluxfn.persistence.repository
+
+import com.realworld.webfluxfn.MockTestData
+import reactor.core.publisher.Mono
+import spock.lang.Specification
+
+import java.time.Duration
+
+import static junit.framework.TestCase.assertEquals
+
+class CachedArticleCountRepositoryTest extends Specification {
+    private final ArticleRepository articleRepository = Mock()
+    private final CachedArticleCountRepository cachedArticleCountRepository = new CachedArticleCountRepository(
+            articleRepository, new ArticleCountCacheProperties(100, Duration.ofMinutes(1)))
+
+    def "test CountArticlesFilteredBy counts each filter only once"() {
+        given: "the articles of each filter are counted once"
+        1 * articleRepository.countArticlesFilteredBy("tag", null, MockTestData.CURRENT_USER) >> Mono.just(3L)
+        1 * articleRepository.countArticlesFilteredBy(null, null, null) >> Mono.just(10L)
+
+        when: "every filter is counted twice"
+        Long first = cachedArticleCountRepository.countArticlesFilteredBy("tag", null, MockTestData.CURRENT_USER).block()
+        Long second = cachedArticleCountRepository.countArticlesFilteredBy("tag", null, MockTestData.CURRENT_USER).block()
+        Long unfiltered = cachedArticleCountRepository.countArticlesFilteredBy(null, null, null).block()
+        cachedArticleCountRepository.countArticlesFilteredBy(null, null, null).block()
+
+        then: "the cached counts are returned"
+        assertEquals(3L, first)
+        assertEquals(3L, second)
+        assertEquals(10L, unfiltered)
+    }
+
+    def "test CountArticlesByAuthorIds ignores the order of the authors"() {
+        given: "the articles of the authors are counted once"
+        1 * articleRepository.countArticlesByAuthorIds(["author 1", "author 2"]) >> Mono.just(5L)
+
+        when: "the same authors are counted in another order"
+        cachedArticleCountRepository.countArticlesByAuthorIds(["author 1", "author 2"]).block()
+        Long count = cachedArticleCountRepository.countArticlesByAuthorIds(["author 2", "author 1"]).block()
+
+        then: "the cached count is returned"
+        assertEquals(5L, count)
+    }
+}
@@ -0,0 +1,57 @@
+package com.realworld.webfluxfn.persistence.repository
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.realworld.webfluxfn.MockTestData
+import com.realworld.webfluxfn.dto.view.TagListView
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import spock.lang.Specification
+
+import java.time.Duration
+
+import static junit.framework.TestCase.assertEquals
+
+class CachedTagRepositoryTest extends Specification {
+    private final TagRepository tagRepository = Mock()
+    private final ObjectMapper objectMapper = new ObjectMapper()
+    private final CachedTagRepository cachedTagRepository = new CachedTagRepository(
+            tagRepository, objectMapper, new TagCacheProperties(Duration.ZERO))
+
+    def "test Refresh loads the stored tags with their JSON"() {
+        given: "the tags are stored"
+        tagRepository.findAll(TagManualRepository.MOST_USED_TAG_SORT) >> Flux.just(MockTestData.TAG_1, MockTestData.TAG_2)
+
+        when: "the cache is refreshed"
+        cachedTagRepository.refresh().block()
+
+        then: "the stored tags are served from memory, also as JSON"
+        assertEquals([MockTestData.TAG_1.getTagName(), MockTestData.TAG_2.getTagName()],
+                cachedTagRepository.getTagListView().getTags())
+        assertEquals(cachedTagRepository.getTagListView(),
+                objectMapper.readValue(cachedTagRepository.getTagListJson(), TagListView))
+    }
+
+    def "test AddArticleTags counts all the tags and caches the new ones"() {
+        given: "one of the tags is cached already"
+        tagRepository.findAll(TagManualRepository.MOST_USED_TAG_SORT) >> Flux.just(MockTestData.TAG_1)
+        cachedTagRepository.refresh().block()
+        and: "all the tags are counted"
+        List<String> tags = [MockTestData.TAG_1.getTagName(), MockTestData.TAG_2.getTagName(), MockTestData.TAG_3.getTagName()]
+        1 * tagRepository.incrementArticleCounts(tags) >> Mono.just(2L)
+
+        when: "an article adds the tags"
+        cachedTagRepository.addArticleTags(tags).block()
+
+        then: "all the tags are cached"
+        assertEquals([MockTestData.TAG_1.getTagName(), MockTestData.TAG_2.getTagName(), MockTestData.TAG_3.getTagName()],
+                cachedTagRepository.getTagListView().getTags())
+    }
+
+    def "test FindMostUsedTags reads the ranking from the repository"() {
+        given: "the most used tags"
+        1 * tagRepository.findMostUsedTags(2) >> Flux.just(MockTestData.TAG_2, MockTestData.TAG_1)
+
+        expect: "the tags in the order of the ranking"
+        cachedTagRepository.findMostUsedTags(2).block().getTags() == [MockTestData.TAG_2.getTagName(), MockTestData.TAG_1.getTagName()]
+    }
+}
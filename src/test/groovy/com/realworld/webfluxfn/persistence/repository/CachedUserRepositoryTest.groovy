@@ -0,0 +1,174 @@
+package com.realworld.webfluxfn.persistence.repository
+
+import com.realworld.webfluxfn.MockTestData
+import com.realworld.webfluxfn.exception.InvalidRequestException
+import com.realworld.webfluxfn.persistence.entity.User
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.core.publisher.Sinks
+import reactor.test.StepVerifier
+import spock.lang.Specification
+
+import java.time.Duration
+
+import static junit.framework.TestCase.assertEquals
+import static junit.framework.TestCase.assertNotSame
+import static junit.framework.TestCase.assertTrue
+
+class CachedUserRepositoryTest extends Specification {
+    private final UserRepository userRepository = Mock()
+    private final CachedUserRepository cachedUserRepository = new CachedUserRepository(
+            userRepository, new UserCacheProperties(100, Duration.ofMinutes(5)))
+
+    private static final User AUTHOR_USER = MockTestData.AUTHOR_USER
+    private static final User CURRENT_USER = MockTestData.CURRENT_USER
+
+    def "test FindById reads the repository only once"() {
+        given: "the user is loaded from the repository once"
+        1 * userRepository.findById(AUTHOR_USER.getId()) >> Mono.just(AUTHOR_USER)
+
+        when: "the user is requested twice"
+        User first = cachedUserRepository.findById(AUTHOR_USER.getId()).block()
+        User second = cachedUserRepository.findById(AUTHOR_USER.getId()).block()
+
+        then: "both are equal copies of the stored user"
+        assertEquals(AUTHOR_USER, first)
+        assertEquals(AUTHOR_USER.getUsername(), second.getUsername())
+        assertNotSame(first, second)
+    }
+
+    def "test FindByUsername shares entries with FindById"() {
+        given: "the user is loaded by its username once"
+        1 * userRepository.findByUsername(AUTHOR_USER.getUsername()) >> Mono.just(AUTHOR_USER)
+        0 * userRepository.findById(_)
+
+        when: "the user is requested by username, then by id"
+        cachedUserRepository.findByUsername(AUTHOR_USER.getUsername()).block()
+        Mono<User> rtn = cachedUserRepository.findByUsername(AUTHOR_USER.getUsername())
+                .then(cachedUserRepository.findById(AUTHOR_USER.getId()))
+
+        then: "the cached user is returned"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals(AUTHOR_USER.getUsername(), r.getUsername()))
+                .expectComplete().verify()
+    }
+
+    def "test FindByUsernameOrFail of an unknown user"() {
+        given:
+        userRepository.findByUsername("unknown") >> Mono.empty()
+
+        when: "an unknown user is requested"
+        Mono<User> rtn = cachedUserRepository.findByUsernameOrFail("unknown")
+
+        then: "an invalid request is reported"
+        StepVerifier.create(rtn)
+                .expectErrorSatisfies(ex -> assertTrue(ex instanceof InvalidRequestException))
+                .verify()
+    }
+
+    def "test Evict reloads the user on next request"() {
+        given: "the user is loaded twice from the repository"
+        2 * userRepository.findById(AUTHOR_USER.getId()) >> Mono.just(AUTHOR_USER)
+
+        when: "the user is evicted in between two requests"
+        cachedUserRepository.findById(AUTHOR_USER.getId()).block()
+        cachedUserRepository.evict(AUTHOR_USER)
+        User reloaded = cachedUserRepository.findById(AUTHOR_USER.getId()).block()
+
+        then: "the user is returned"
+        assertEquals(AUTHOR_USER, reloaded)
+    }
+
+    def "test Evict during a slow load keeps the loaded user out of the cache"() {
+        given: "the first load is held back, the second one returns the updated user"
+        Sinks.One<User> slowLoad = Sinks.one()
+        User updatedUser = AUTHOR_USER.toBuilder().bio("updated bio").build()
+        2 * userRepository.findById(AUTHOR_USER.getId()) >>> [slowLoad.asMono(), Mono.just(updatedUser)]
+
+        when: "the user is evicted while the load is in flight, then the load completes with the old document"
+        User loaded = null
+        cachedUserRepository.findById(AUTHOR_USER.getId()).subscribe(user -> loaded = user)
+        cachedUserRepository.evict(AUTHOR_USER)
+        slowLoad.tryEmitValue(AUTHOR_USER)
+        User reloaded = cachedUserRepository.findById(AUTHOR_USER.getId()).block()
+
+        then: "the slow load is answered, but the next request reloads the updated user"
+        assertEquals(AUTHOR_USER.getBio(), loaded.getBio())
+        assertEquals("updated bio", reloaded.getBio())
+    }
+
+    def "test Evict during a slow load by username keeps the loaded user out of the cache"() {
+        given: "the first load is held back, the second one returns the updated user"
+        Sinks.One<User> slowLoad = Sinks.one()
+        User updatedUser = AUTHOR_USER.toBuilder().bio("updated bio").build()
+        2 * userRepository.findByUsername(AUTHOR_USER.getUsername()) >>> [slowLoad.asMono(), Mono.just(updatedUser)]
+        0 * userRepository.findById(_)
+
+        when: "the user is evicted while the load is in flight, then the load completes with the old document"
+        cachedUserRepository.findByUsername(AUTHOR_USER.getUsername()).subscribe()
+        cachedUserRepository.evict(AUTHOR_USER.getId())
+        slowLoad.tryEmitValue(AUTHOR_USER)
+        User reloaded = cachedUserRepository.findByUsername(AUTHOR_USER.getUsername()).block()
+
+        then: "the next request reloads the updated user"
+        assertEquals("updated bio", reloaded.getBio())
+    }
+
+    def "test Evict drops the cached username"() {
+        given: "the user is loaded twice by its username"
+        2 * userRepository.findByUsername(AUTHOR_USER.getUsername()) >> Mono.just(AUTHOR_USER)
+        0 * userRepository.findById(_)
+
+        when: "the user is evicted by id in between two requests"
+        cachedUserRepository.findByUsername(AUTHOR_USER.getUsername()).block()
+        cachedUserRepository.evict(AUTHOR_USER.getId())
+        User reloaded = cachedUserRepository.findByUsername(AUTHOR_USER.getUsername()).block()
+
+        then: "the user is returned"
+        assertEquals(AUTHOR_USER, reloaded)
+    }
+
+    def "test mutating a returned user does not alter the cache"() {
+        given:
+        User storedUser = MockTestData.makeUser("stored")
+        1 * userRepository.findById(storedUser.getId()) >> Mono.just(storedUser)
+
+        when: "a returned user is modified"
+        User returned = cachedUserRepository.findById(storedUser.getId()).block()
+        returned.setBio("changed bio")
+        returned.follow(AUTHOR_USER)
+        User cached = cachedUserRepository.findById(storedUser.getId()).block()
+
+        then: "the cached user is unchanged"
+        assertEquals("storedUserBio", cached.getBio())
+        assertTrue(cached.getFollowingIds().isEmpty())
+    }
+
+    def "test FindAllById only queries the users that are not cached yet"() {
+        given: "one of the users is already cached"
+        userRepository.findById(AUTHOR_USER.getId()) >> Mono.just(AUTHOR_USER)
+        cachedUserRepository.findById(AUTHOR_USER.getId()).block()
+        and: "only the other one is queried"
+        1 * userRepository.findAllById([CURRENT_USER.getId()] as Set) >> Flux.just(CURRENT_USER)
+
+        when: "both users are requested"
+        Map<String, User> rtn = cachedUserRepository.findAllById([AUTHOR_USER.getId(), CURRENT_USER.getId()]).block()
+
+        then: "both users are returned"
+        assertEquals([AUTHOR_USER.getId(), CURRENT_USER.getId()] as Set, rtn.keySet())
+    }
+
+    def "test FindAuthorsByArticles of cached authors does not query"() {
+        given: "the author is already cached"
+        userRepository.findById(AUTHOR_USER.getId()) >> Mono.just(AUTHOR_USER)
+        cachedUserRepository.findById(AUTHOR_USER.getId()).block()
+        0 * userRepository.findAllById(_)
+
+        when: "the authors of articles are requested"
+        Map<String, User> rtn = cachedUserRepository.findAuthorsByArticles([MockTestData.ARTICLE_1, MockTestData.ARTICLE_2]).block()
+
+        then: "the cached author is returned"
+        assertEquals(AUTHOR_USER, rtn.get(AUTHOR_USER.getId()))
+        assertEquals(1, rtn.size())
+    }
+}
@@ -0,0 +1,36 @@
+package com.realworld.webfluxfn.persistence.repository
+
+import org.bson.Document
+import spock.lang.Specification
+
+class QueryPlanCheckerTest extends Specification {
+
+    def "test IsCollectionScan finds a collection scan nested in the winning plan"() {
+        given: "an explained query whose winning plan sorts a collection scan"
+        Document explained = new Document("queryPlanner", new Document("winningPlan",
+                new Document("stage", "SORT").append("inputStage", new Document("stage", "COLLSCAN"))))
+
+        expect:
+        QueryPlanChecker.isCollectionScan(explained)
+    }
+
+    def "test IsCollectionScan finds a collection scan in one of the input stages"() {
+        given: "an explained query whose winning plan ors an index scan with a collection scan"
+        Document explained = new Document("queryPlanner", new Document("winningPlan",
+                new Document("stage", "SUBPLAN").append("inputStages",
+                        [new Document("stage", "IXSCAN"), new Document("stage", "COLLSCAN")])))
+
+        expect:
+        QueryPlanChecker.isCollectionScan(explained)
+    }
+
+    def "test IsCollectionScan accepts an index scan"() {
+        given: "an explained query whose winning plan fetches from an index scan"
+        Document explained = new Document("queryPlanner", new Document("winningPlan",
+                new Document("stage", "LIMIT").append("inputStage",
+                        new Document("stage", "FETCH").append("inputStage", new Document("stage", "IXSCAN")))))
+
+        expect:
+        !QueryPlanChecker.isCollectionScan(explained)
+    }
+}
@@ -13,8 +13,11 @@ import com.realworld.webfluxfn.exception.InvalidRequestException
 import com.realworld.webfluxfn.persistence.entity.Article
 import com.realworld.webfluxfn.persistence.entity.Tag
 import com.realworld.webfluxfn.persistence.entity.User
+import com.realworld.webfluxfn.persistence.repository.ArticleListProperties
+import com.realworld.webfluxfn.persistence.repository.ArticleProjection
 import com.realworld.webfluxfn.persistence.repository.ArticleRepository
-import com.realworld.webfluxfn.persistence.repository.TagRepository
+import com.realworld.webfluxfn.persistence.repository.CachedTagRepository
+import org.springframework.dao.DuplicateKeyException
 import reactor.core.publisher.Flux
 import reactor.core.publisher.Hooks
 import reactor.core.publisher.Mono
@@ -27,11 +30,13 @@ import static junit.framework.TestCase.assertTrue
 
 class ArticleServiceTest extends Specification {
     private final ArticleRepository articleRepository = Mock()
-    private final TagRepository tagRepository = Mock()
+    private final CachedTagRepository tagRepository = Mock()
     private final UserArticleService userArticleService = Mock()
+    private final TimelineService timelineService = Mock()
+    private final FeedStreamService feedStreamService = Mock()
 
-    ArticleService articleService = new ArticleService(
-            articleRepository, tagRepository, userArticleService)
+    ArticleService articleService = new ArticleService(articleRepository, tagRepository, userArticleService,
+            new ArticleListProperties(ArticleProjection.SUMMARY), timelineService, feedStreamService)
 
     void setup() {
         Hooks.onOperatorDebug()
@@ -45,8 +50,8 @@ class ArticleServiceTest extends Specification {
         Tag tag1 = MockTestData.TAG_1
         Tag tag2 = MockTestData.TAG_2
         Tag tag3 = MockTestData.TAG_3
-        and: "tag repository returns value on findAll call"
-        tagRepository.findAll () >> Flux.just(tag1, tag2, tag3)
+        and: "tag repository returns the cached tags"
+        tagRepository.getTagListView() >> TagListView.makeInstance([tag1, tag2, tag3])
 
         when: "retrieve all the tags"
         Mono<TagListView> rtn = articleService.getTags()
@@ -62,6 +67,19 @@ class ArticleServiceTest extends Specification {
                 .expectComplete().verify()
     }
 
+    def "test GetTags of the most used tags"() {
+        given: "the most used tags"
+        1 * tagRepository.findMostUsedTags(2) >> Mono.just(TagListView.makeInstance([MockTestData.TAG_1, MockTestData.TAG_2]))
+
+        when: "retrieve the two most used tags"
+        Mono<TagListView> rtn = articleService.getTags(2)
+
+        then: "the ranked tags are returned"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals([MockTestData.TAG_1.getTagName(), MockTestData.TAG_2.getTagName()], r.getTags()))
+                .expectComplete().verify()
+    }
+
     def "test CreateArticle success"() {
         given: "a create article request, and author"
         CreateArticleRequest request = new CreateArticleRequest()
@@ -72,7 +90,11 @@ class ArticleServiceTest extends Specification {
         User author = MockTestData.AUTHOR_USER
         and:
         articleRepository.saveAll(_) >> Flux.just(MockTestData.ARTICLE_1)
-        tagRepository.saveAllTags(MockTestData.ARTICLE_1.getTags()) >> Flux.just(MockTestData.TAG_1, MockTestData.TAG_2)
+        1 * tagRepository.addArticleTags(MockTestData.ARTICLE_1.getTags()) >> Mono.empty()
+        and: "the article is written to the timelines of the followers"
+        1 * timelineService.fanOut(MockTestData.ARTICLE_1, author) >> Mono.just(1L)
+        and: "the article is streamed to the connected followers"
+        1 * feedStreamService.publish(MockTestData.ARTICLE_1, author)
 
         when: "the service calls to create article"
         println(MockTestData.ARTICLE_1.getSlug())
@@ -91,19 +113,45 @@ class ArticleServiceTest extends Specification {
                 .expectComplete().verify()
     }
 
+    def "test CreateArticle fail because the title is already used"() {
+        given: "a create article request with the title of an existing article, and author"
+        CreateArticleRequest request = new CreateArticleRequest()
+                .setTitle(MockTestData.ARTICLE_VIEW_1.getTitle())
+                .setDescription(MockTestData.ARTICLE_VIEW_1.getDescription())
+                .setBody(MockTestData.ARTICLE_VIEW_1.getBody())
+                .setTagList(MockTestData.ARTICLE_VIEW_1.getTags())
+        User author = MockTestData.AUTHOR_USER
+        and:
+        articleRepository.saveAll(_) >> Flux.error(new DuplicateKeyException("duplicate slug"))
+        0 * timelineService.fanOut(_, _)
+        0 * feedStreamService.publish(_, _)
+
+        when: "the service calls to create article"
+        Mono<ArticleView> rtn = articleService.createArticle(Mono.just(request), author)
+
+        then: "the request is invalid"
+        StepVerifier.create(rtn)
+                .expectErrorSatisfies(ex-> {
+                    assertTrue(ex instanceof InvalidRequestException)
+                    assertEquals("Title", ((InvalidRequestException) ex).getSubject())
+                }).verify()
+    }
+
     def "test Feed success"() {
         given: "an author, and the feed limit, offset"
         User currUser = MockTestData.CURRENT_USER
         int offset = 0
         int limit = 10
         and:
-        articleRepository.findNewestArticlesByAuthorIds(MockTestData.CURRENT_USER.getFollowingIds(), offset, limit)
-                >> Flux.just(MockTestData.ARTICLE_1, MockTestData.ARTICLE_2)
-        userArticleService.mapToArticleView(MockTestData.ARTICLE_1, currUser) >> Mono.just(MockTestData.ARTICLE_VIEW_1)
-        userArticleService.mapToArticleView(MockTestData.ARTICLE_2, currUser) >> Mono.just(MockTestData.ARTICLE_VIEW_2)
+        timelineService.findFeed(currUser, ArticleProjection.SUMMARY, null, offset, limit)
+                >> Mono.just([MockTestData.ARTICLE_1, MockTestData.ARTICLE_2])
+        0 * articleRepository.findNewestArticlesByAuthorIds(*_)
+        timelineService.countFeed(currUser) >> Mono.just(2L)
+        userArticleService.mapToMultipleArticlesView([MockTestData.ARTICLE_1, MockTestData.ARTICLE_2], limit, 2L, Optional.of(currUser))
+                >> Mono.just(MultipleArticlesView.makeInstance([MockTestData.ARTICLE_VIEW_1, MockTestData.ARTICLE_VIEW_2], null, 2L))
 
         when: "the service call feed of the author user"
-        Mono<MultipleArticlesView> rtn = articleService.feed(offset, limit, currUser)
+        Mono<MultipleArticlesView> rtn = articleService.feed(offset, limit, null, currUser)
 
         then: "the service calls"
         StepVerifier.create(rtn)
@@ -125,12 +173,12 @@ class ArticleServiceTest extends Specification {
         int offset = 0
         int limit = 10
         and:
-        userArticleService.findArticles(tag, authorName, usernName, offset, limit, Optional.of(currUser))
+        userArticleService.findArticles(tag, authorName, usernName, offset, limit, null, Optional.of(currUser))
                 >> Mono.just(MultipleArticlesView.makeInstance([MockTestData.ARTICLE_1, MockTestData.ARTICLE_2]))
 
         when: "the service call the findArticles()"
 //        Mono<MultipleArticlesView> rtn = articleService.findArticles(null, null, null, offset, limit, Optional.of(currUser))
-        Mono<MultipleArticlesView> rtn = articleService.findArticles(tag, authorName, usernName, offset, limit, Optional.of(currUser))
+        Mono<MultipleArticlesView> rtn = articleService.findArticles(tag, authorName, usernName, offset, limit, null, Optional.of(currUser))
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -171,8 +219,9 @@ class ArticleServiceTest extends Specification {
         UpdateArticleRequest updateArticleRequest = UpdateArticleRequest.builder()
                 .title(articleView1.getTitle()).description(articleView1.getDescription()).body(articleView1.getBody()).build()
         and:
-        articleRepository.findBySlugOrFail(slug) >> Mono.just(MockTestData.ARTICLE_1)
-        articleRepository.save(_) >> Mono.just(MockTestData.ARTICLE_1)
+        0 * articleRepository.save(_)
+        articleRepository.updateContent(slug, authorUser.getId(), articleView1.getTitle(), articleView1.getDescription(),
+                articleView1.getBody()) >> Mono.just(MockTestData.ARTICLE_1)
         userArticleService.mapToArticleView(MockTestData.ARTICLE_1, authorUser) >> Mono.just(articleView1)
 
         when: "the service call the updateArticle()"
@@ -194,7 +243,8 @@ class ArticleServiceTest extends Specification {
                 .title(MockTestData.ARTICLE_1.getTitle())
                 .description(MockTestData.ARTICLE_1.getDescription())
                 .body(MockTestData.ARTICLE_1.getBody()).build()
-        and:
+        and: "the update is guarded by the author"
+        articleRepository.updateContent(slug, nonAuthorUser.getId(), _, _, _) >> Mono.empty()
         articleRepository.findBySlugOrFail(slug) >> Mono.just(MockTestData.ARTICLE_1)
 
         when: "the service call the updateArticle()"
@@ -215,9 +265,13 @@ class ArticleServiceTest extends Specification {
         and:
         articleRepository.findBySlug(slug) >> Mono.just(MockTestData.ARTICLE_1)
         articleRepository.deleteArticleBySlug(slug) >> Mono.just(MockTestData.ARTICLE_1)
+        1 * userArticleService.deleteComments(MockTestData.ARTICLE_1) >> Mono.empty()
+        1 * tagRepository.removeArticleTags(MockTestData.ARTICLE_1.getTags()) >> Mono.empty()
+        and: "the article is removed from the timelines"
+        1 * timelineService.removeArticle(MockTestData.ARTICLE_1) >> Mono.empty()
 
         when: "the service call the deleteArticle()"
-        Mono<Void> rtn = articleService.deleteArticle(slug, authorUser)
+        Mono<Void> rtn = articleService.deleteArticle(slug, authorUser.getId())
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -232,7 +286,7 @@ class ArticleServiceTest extends Specification {
         articleRepository.findBySlug(slug) >> Mono.just(MockTestData.ARTICLE_1)
 
         when: "the service call the deleteArticle()"
-        Mono<Void> rtn = articleService.deleteArticle(slug, nonAuthorUser)
+        Mono<Void> rtn = articleService.deleteArticle(slug, nonAuthorUser.getId())
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -249,10 +303,10 @@ class ArticleServiceTest extends Specification {
         CommentView expectedCommentView = MockTestData.COMMENT_VIEW_11
         CreateCommentRequest createCommentRequest = new CreateCommentRequest(expectedCommentView.getBody())
         and:
-        userArticleService.addComment(slug, _, currUser) >> Mono.just(expectedCommentView)
+        userArticleService.addComment(slug, _, currUser.getId()) >> Mono.just(expectedCommentView)
 
         when: "the service call the addComment()"
-        Mono<CommentView> rtn = articleService.addComment(slug, Mono.just(createCommentRequest), currUser)
+        Mono<CommentView> rtn = articleService.addComment(slug, Mono.just(createCommentRequest), currUser.getId())
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -270,10 +324,10 @@ class ArticleServiceTest extends Specification {
         CommentView expectedCommentView = MockTestData.COMMENT_VIEW_11
         String commentId = expectedCommentView.getId()
         and:
-        userArticleService.deleteComment(commentId, slug, currUser) >> Mono.empty()
+        userArticleService.deleteComment(commentId, slug, currUser.getId()) >> Mono.empty()
 
         when: "the service call the deleteComment()"
-        Mono<Void> rtn = articleService.deleteComment(commentId, slug, currUser)
+        Mono<Void> rtn = articleService.deleteComment(commentId, slug, currUser.getId())
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -286,11 +340,11 @@ class ArticleServiceTest extends Specification {
         ArticleView articleView1 = MockTestData.ARTICLE_VIEW_1
         String slug = articleView1.getSlug()
         and:
-        userArticleService.getComments(slug, Optional.of(currUser))
+        userArticleService.getComments(slug, 0, 20, Optional.of(currUser))
                 >> Mono.just(MultipleCommentsView.makeInstance([MockTestData.COMMENT_11, MockTestData.COMMENT_12]))
 
         when: "the service call the GetComments()"
-        Mono<MultipleCommentsView> rtn = articleService.getComments(slug, Optional.of(currUser))
+        Mono<MultipleCommentsView> rtn = articleService.getComments(slug, 0, 20, Optional.of(currUser))
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -309,12 +363,12 @@ class ArticleServiceTest extends Specification {
         articleView1.setFavorited(true)
         String slug = articleView1.getSlug()
         and:
-        articleRepository.findBySlug(slug) >> Mono.just(MockTestData.ARTICLE_1)
-        articleRepository.save(_) >> Mono.just(MockTestData.ARTICLE_1)
-        userArticleService.mapToArticleView(MockTestData.ARTICLE_1, currUser) >> Mono.just(articleView1)
+        1 * articleRepository.addFavoritingUser(slug, currUser.getId()) >> Mono.just(MockTestData.ARTICLE_1)
+        0 * articleRepository.save(_)
+        userArticleService.mapToArticleView(MockTestData.ARTICLE_1, currUser.getId()) >> Mono.just(articleView1)
 
         when: "the service call the findArticles()"
-        Mono<ArticleView> rtn = articleService.favoriteArticle(slug, currUser)
+        Mono<ArticleView> rtn = articleService.favoriteArticle(slug, currUser.getId())
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -334,16 +388,16 @@ class ArticleServiceTest extends Specification {
         given: "an existing article's slug, a current user"
         User currUser = MockTestData.CURRENT_USER
         Article testArticle = MockTestData.makeArticle("to-favorite", MockTestData.AUTHOR_USER,
-                null, null, [currUser.getId()])
+                null, [currUser.getId()])
         ArticleView testArticleView =MockTestData.makeArticleView(testArticle, MockTestData.AUTHOR_USER_PROFILE)
         testArticleView.setFavorited(true)
         String slug = testArticle.getSlug()
         and:
-        articleRepository.findBySlug(slug) >> Mono.just(testArticle)
-        userArticleService.mapToArticleView(testArticle, currUser) >> Mono.just(testArticleView)
+        articleRepository.addFavoritingUser(slug, currUser.getId()) >> Mono.just(testArticle)
+        userArticleService.mapToArticleView(testArticle, currUser.getId()) >> Mono.just(testArticleView)
 
         when: "the service call the findArticles()"
-        Mono<ArticleView> rtn = articleService.favoriteArticle(slug, currUser)
+        Mono<ArticleView> rtn = articleService.favoriteArticle(slug, currUser.getId())
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -366,12 +420,12 @@ class ArticleServiceTest extends Specification {
         articleView1.setFavorited(false)
         String slug = articleView1.getSlug()
         and:
-        articleRepository.findBySlug(slug) >> Mono.just(MockTestData.ARTICLE_1)
-        articleRepository.save(_) >> Mono.just(MockTestData.ARTICLE_1)
-        userArticleService.mapToArticleView(MockTestData.ARTICLE_1, currUser) >> Mono.just(articleView1)
+        1 * articleRepository.removeFavoritingUser(slug, currUser.getId()) >> Mono.just(MockTestData.ARTICLE_1)
+        0 * articleRepository.save(_)
+        userArticleService.mapToArticleView(MockTestData.ARTICLE_1, currUser.getId()) >> Mono.just(articleView1)
 
         when: "the service call the findArticles()"
-        Mono<ArticleView> rtn = articleService.unfavoriteArticle(slug, currUser)
+        Mono<ArticleView> rtn = articleService.unfavoriteArticle(slug, currUser.getId())
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -391,16 +445,16 @@ class ArticleServiceTest extends Specification {
         given: "an existing article's slug, a current user"
         User currUser = MockTestData.CURRENT_USER
         Article testArticle = MockTestData.makeArticle("to-unfavorite", MockTestData.AUTHOR_USER,
-                null, null, null)
+                null, null)
         ArticleView testArticleView =MockTestData.makeArticleView(testArticle, MockTestData.AUTHOR_USER_PROFILE)
         testArticleView.setFavorited(false)
         String slug = testArticle.getSlug()
         and:
-        articleRepository.findBySlug(slug) >> Mono.just(testArticle)
-        userArticleService.mapToArticleView(testArticle, currUser) >> Mono.just(testArticleView)
+        articleRepository.removeFavoritingUser(slug, currUser.getId()) >> Mono.just(testArticle)
+        userArticleService.mapToArticleView(testArticle, currUser.getId()) >> Mono.just(testArticleView)
 
         when: "the service call the findArticles()"
-        Mono<ArticleView> rtn = articleService.unfavoriteArticle(slug, currUser)
+        Mono<ArticleView> rtn = articleService.unfavoriteArticle(slug, currUser.getId())
 
         then: "return contains following"
         StepVerifier.create(rtn)
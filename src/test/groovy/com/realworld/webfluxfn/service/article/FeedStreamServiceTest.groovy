@@ -0,0 +1,58 @@
+package com.realworld.webfluxfn.service.article
+
+import com.realworld.webfluxfn.MockTestData
+import com.realworld.webfluxfn.persistence.entity.User
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.web.server.ResponseStatusException
+import reactor.test.StepVerifier
+import spock.lang.Specification
+
+class FeedStreamServiceTest extends Specification {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    private final FeedStreamService feedStreamService = new FeedStreamService(new FeedStreamProperties(2, 1), meterRegistry)
+
+    private final User reader = MockTestData.CURRENT_USER.toBuilder().followingIds([MockTestData.AUTHOR_USER.getId()]).build()
+
+    def "test Stream sends the new articles of the followed authors only"() {
+        expect: "the article of the followed author, seen as followed, but not the one of another author"
+        StepVerifier.create(feedStreamService.stream(reader))
+                .then {
+                    feedStreamService.publish(MockTestData.ARTICLE_1, MockTestData.AUTHOR_USER)
+                    feedStreamService.publish(MockTestData.makeArticle("3", reader, [], []), reader)
+                }
+                .assertNext(view -> {
+                    assert view.getSlug() == MockTestData.ARTICLE_1.getSlug()
+                    assert view.getAuthor().isFollowing()
+                })
+                .thenCancel().verify()
+    }
+
+    def "test Stream drops the oldest articles beyond the buffer of a slow connection"() {
+        expect: "a connection reading nothing while three articles are created keeps the two newest"
+        StepVerifier.create(feedStreamService.stream(reader), 0)
+                .then {
+                    feedStreamService.publish(MockTestData.makeArticle("3", MockTestData.AUTHOR_USER, [], []), MockTestData.AUTHOR_USER)
+                    feedStreamService.publish(MockTestData.ARTICLE_1, MockTestData.AUTHOR_USER)
+                    feedStreamService.publish(MockTestData.ARTICLE_2, MockTestData.AUTHOR_USER)
+                }
+                .thenRequest(2)
+                .assertNext(view -> { assert view.getSlug() == MockTestData.ARTICLE_1.getSlug() })
+                .assertNext(view -> { assert view.getSlug() == MockTestData.ARTICLE_2.getSlug() })
+                .thenCancel().verify()
+        meterRegistry.counter("feed.stream.dropped").count() == 1
+    }
+
+    def "test Stream rejects the connections beyond the maximum"() {
+        given: "as many connections as the maximum"
+        def connected = feedStreamService.stream(reader).subscribe()
+
+        expect: "one more is rejected"
+        StepVerifier.create(feedStreamService.stream(reader))
+                .expectError(ResponseStatusException)
+                .verify()
+        meterRegistry.counter("feed.stream.rejected").count() == 1
+
+        cleanup:
+        connected.dispose()
+    }
+}
@@ -0,0 +1,155 @@
+package com.realworld.webfluxfn.service.article
+
+import com.realworld.webfluxfn.MockTestData
+import com.realworld.webfluxfn.persistence.entity.Article
+import com.realworld.webfluxfn.persistence.entity.TimelineEntry
+import com.realworld.webfluxfn.persistence.entity.User
+import com.realworld.webfluxfn.persistence.repository.ArticleProjection
+import com.realworld.webfluxfn.persistence.repository.ArticleRepository
+import com.realworld.webfluxfn.persistence.repository.CachedArticleCountRepository
+import com.realworld.webfluxfn.persistence.repository.FollowRepository
+import com.realworld.webfluxfn.persistence.repository.TimelineProperties
+import com.realworld.webfluxfn.persistence.repository.TimelineRepository
+import com.realworld.webfluxfn.persistence.repository.UserRepository
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import spock.lang.Specification
+
+import java.time.Duration
+import java.time.Instant
+
+import static junit.framework.TestCase.assertEquals
+
+class TimelineServiceTest extends Specification {
+    private static final long FAN_OUT_MAX_FOLLOWERS = 100
+
+    private final TimelineRepository timelineRepository = Mock()
+    private final ArticleRepository articleRepository = Mock()
+    private final FollowRepository followRepository = Mock()
+    private final UserRepository userRepository = Mock()
+    private final CachedArticleCountRepository articleCountRepository = Mock()
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+
+    private TimelineService timelineService
+
+    void setup() {
+        userRepository.findIdsByFollowersCountAtLeast(FAN_OUT_MAX_FOLLOWERS) >> Flux.just("celebrity_id")
+        timelineService = new TimelineService(timelineRepository, articleRepository, followRepository, userRepository,
+                articleCountRepository, new TimelineProperties(FAN_OUT_MAX_FOLLOWERS, 20, Duration.ofMinutes(1)), meterRegistry)
+    }
+
+    def "test FanOut writes the article to the timelines of the followers"() {
+        given: "an author with two followers"
+        User author = makeAuthor(2)
+        Article article = makeArticle("1", author.getId(), 1)
+        followRepository.findFollowerIds(author.getId()) >> Flux.just("follower_1", "follower_2")
+        1 * timelineRepository.addToTimelines(["follower_1", "follower_2"], article) >> Mono.just(2L)
+
+        expect: "both followers get the article"
+        timelineService.fanOut(article, author).block() == 2L
+    }
+
+    def "test FanOut does not fail when the timelines are not written"() {
+        given: "an author with a follower whose timeline fails to be written"
+        User author = makeAuthor(1)
+        Article article = makeArticle("1", author.getId(), 1)
+        followRepository.findFollowerIds(author.getId()) >> Flux.just("follower_1")
+        timelineRepository.addToTimelines(["follower_1"], article) >> Mono.error(new IllegalStateException("unavailable"))
+
+        expect: "nothing is written and the failure is counted"
+        timelineService.fanOut(article, author).block() == 0L
+        meterRegistry.counter("feed.timeline.fanout.failed").count() == 1
+    }
+
+    def "test FanOut skips the authors with too many followers"() {
+        given: "an author followed by as many users as the threshold"
+        User author = makeAuthor(FAN_OUT_MAX_FOLLOWERS)
+        0 * followRepository.findFollowerIds(_)
+        0 * timelineRepository.addToTimelines(_, _)
+
+        expect: "no timeline is written"
+        timelineService.fanOut(makeArticle("1", author.getId(), 1), author).block() == 0L
+    }
+
+    def "test AddFollow adds the newest articles of the followed user"() {
+        given: "a followed user below the threshold"
+        User followee = makeAuthor(1)
+        1 * timelineRepository.addAuthorArticles("follower_id", followee.getId(), 20) >> Mono.just(3L)
+
+        expect: "the articles are added to the timeline of the follower"
+        timelineService.addFollow("follower_id", followee).block() == null
+    }
+
+    def "test FindFeed reads the timeline only when no followed author is pulled"() {
+        given: "a reader following a regular author"
+        User reader = makeReader(["author_id"])
+        Article newer = makeArticle("2", "author_id", 2)
+        Article older = makeArticle("1", "author_id", 1)
+        1 * timelineRepository.findNewestEntries(reader.getId(), null, 5, 10) >> Flux.just(makeEntry(reader, newer), makeEntry(reader, older))
+        articleRepository.findArticlesByIds([newer.getId(), older.getId()], reader.getId(), ArticleProjection.SUMMARY) >> Flux.just(older, newer)
+        0 * articleRepository.findNewestArticlesByAuthorIds(*_)
+
+        when: "the feed is read"
+        List<Article> feed = timelineService.findFeed(reader, ArticleProjection.SUMMARY, null, 5, 10).block()
+
+        then: "the articles of the timeline, newest first"
+        assertEquals([newer, older], feed)
+    }
+
+    def "test FindFeed merges the timeline with the articles of the pulled authors"() {
+        given: "a reader following a regular author and a pulled one"
+        User reader = makeReader(["author_id", "celebrity_id"])
+        Article pushed = makeArticle("1", "author_id", 3)
+        Article pushedAndPulled = makeArticle("2", "celebrity_id", 2)
+        Article pulled = makeArticle("3", "celebrity_id", 1)
+        and: "both are read as deep as the offset"
+        timelineRepository.findNewestEntries(reader.getId(), null, 0, 3) >> Flux.just(makeEntry(reader, pushed), makeEntry(reader, pushedAndPulled))
+        articleRepository.findArticlesByIds([pushed.getId(), pushedAndPulled.getId()], reader.getId(), ArticleProjection.FULL) >> Flux.just(pushed, pushedAndPulled)
+        articleRepository.findNewestArticlesByAuthorIds(["celebrity_id"], reader.getId(), ArticleProjection.FULL, null, 0, 3) >> Flux.just(pushedAndPulled, pulled)
+
+        when: "the second page of the feed is read"
+        List<Article> feed = timelineService.findFeed(reader, ArticleProjection.FULL, null, 1, 2).block()
+
+        then: "the merged articles appear once each, newest first, after the offset"
+        assertEquals([pushedAndPulled, pulled], feed)
+    }
+
+    def "test CountFeed counts the timeline only when no followed author is pulled"() {
+        given: "a reader following a regular author"
+        User reader = makeReader(["author_id"])
+        timelineRepository.countEntries(reader.getId()) >> Mono.just(3L)
+        0 * articleCountRepository.countArticlesByAuthorIds(_)
+
+        expect: "the entries of the timeline are counted"
+        timelineService.countFeed(reader).block() == 3L
+    }
+
+    def "test CountFeed adds the articles of the pulled authors to the timeline"() {
+        given: "a reader following a regular author and a pulled one"
+        User reader = makeReader(["author_id", "celebrity_id"])
+        timelineRepository.countEntries(reader.getId()) >> Mono.just(3L)
+        articleCountRepository.countArticlesByAuthorIds(["celebrity_id"]) >> Mono.just(4L)
+
+        expect: "only the pulled authors are counted from their articles"
+        timelineService.countFeed(reader).block() == 7L
+    }
+
+    private static User makeAuthor(final long followersCount) {
+        return MockTestData.AUTHOR_USER.toBuilder().followersCount(followersCount).build()
+    }
+
+    private static User makeReader(final List<String> followingIds) {
+        return MockTestData.CURRENT_USER.toBuilder().followingIds(followingIds).build()
+    }
+
+    private static Article makeArticle(final String suffix, final String authorId, final long createdAtSeconds) {
+        return new Article("id" + suffix, "title" + suffix, "description" + suffix, "body" + suffix,
+                Instant.ofEpochSecond(createdAtSeconds), null, authorId, [], [], null)
+    }
+
+    private static TimelineEntry makeEntry(final User owner, final Article article) {
+        return TimelineEntry.makeInstance(owner.getId(), article)
+    }
+}
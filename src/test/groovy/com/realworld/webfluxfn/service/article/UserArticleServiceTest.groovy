@@ -11,21 +11,33 @@ import com.realworld.webfluxfn.exception.InvalidRequestException
 import com.realworld.webfluxfn.persistence.entity.Article
 import com.realworld.webfluxfn.persistence.entity.Comment
 import com.realworld.webfluxfn.persistence.entity.User
+import com.realworld.webfluxfn.persistence.repository.ArticleCursor
+import com.realworld.webfluxfn.persistence.repository.ArticleListProperties
+import com.realworld.webfluxfn.persistence.repository.ArticleProjection
 import com.realworld.webfluxfn.persistence.repository.ArticleRepository
-import com.realworld.webfluxfn.persistence.repository.UserRepository
+import com.realworld.webfluxfn.persistence.repository.CachedArticleCountRepository
+import com.realworld.webfluxfn.persistence.repository.CachedUserRepository
+import com.realworld.webfluxfn.persistence.repository.CommentRepository
 import reactor.core.publisher.Flux
 import reactor.core.publisher.Mono
 import reactor.test.StepVerifier
 import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicInteger
 
 import static junit.framework.TestCase.assertTrue
 import static junit.framework.TestCase.assertEquals
 
 class UserArticleServiceTest extends Specification {
     private final ArticleRepository articleRepository = Mock()
-    private final UserRepository userRepository = Mock()
+    private final CachedUserRepository userRepository = Mock()
+    private final CommentRepository commentRepository = Mock()
+    private final CachedArticleCountRepository articleCountRepository = Mock()
 
-    private final UserArticleService userArticleService = new UserArticleService(articleRepository, userRepository)
+    private final UserArticleService userArticleService = new UserArticleService(articleRepository, userRepository, commentRepository,
+            new ArticleListProperties(ArticleProjection.SUMMARY), articleCountRepository, new ArticleMappingProperties(8, 4))
 
     void setup() {
     }
@@ -49,18 +61,21 @@ class UserArticleServiceTest extends Specification {
         and:
         userRepository.findByUsername(favoritingUserName) >> (uHasFavoritingUserName? Mono.just(favoritingUser) : Mono.empty())
         userRepository.findByUsername(authorName) >> (uHasAuthorName ? Mono.just(authorUser) : Mono.empty())
-        articleRepository.findNewestArticlesFilteredBy(tag, authorUserId, favoritingUser, limit, offset)
+        articleRepository.findNewestArticlesFilteredBy(tag, authorUserId, favoritingUser, MockTestData.CURRENT_USER.getId(),
+                ArticleProjection.SUMMARY, null, limit, offset)
                 >> Flux.just(MockTestData.ARTICLE_1, MockTestData.ARTICLE_2)
-        userRepository.findAuthorByArticle(MockTestData.ARTICLE_1) >> Mono.just(MockTestData.AUTHOR_USER)
-        userRepository.findAuthorByArticle(MockTestData.ARTICLE_2) >> Mono.just(MockTestData.AUTHOR_USER)
+        articleCountRepository.countArticlesFilteredBy(tag, authorUserId, favoritingUser) >> Mono.just(12L)
+        userRepository.findAuthorsByArticles([MockTestData.ARTICLE_1, MockTestData.ARTICLE_2])
+                >> Mono.just([(MockTestData.AUTHOR_USER.getId()): MockTestData.AUTHOR_USER])
 
         when: "the service call the findArticles()"
-        Mono<MultipleArticlesView> rtn = userArticleService.findArticles(tag, (String) authorName, (String) favoritingUserName, offset, limit, Optional.of(MockTestData.CURRENT_USER))
+        Mono<MultipleArticlesView> rtn = userArticleService.findArticles(tag, (String) authorName, (String) favoritingUserName, offset, limit, null, Optional.of(MockTestData.CURRENT_USER))
 
         then: "return contains following"
         StepVerifier.create(rtn)
                 .assertNext(r-> {
-                    assertEquals(2, r.getArticlesCount())
+                    assertEquals(12, r.getArticlesCount())
+                    assertEquals(2, r.getArticles().size())
                     assertEquals(MockTestData.ARTICLE_VIEW_1.getTitle(), r.getArticles().get(0).getTitle())
                     assertEquals(expectedAuthorProfile, r.getArticles().get(0).getAuthor())
                     assertEquals(MockTestData.ARTICLE_VIEW_1.getBody(), r.getArticles().get(0).getBody())
@@ -80,6 +95,83 @@ class UserArticleServiceTest extends Specification {
         true     | true           | false
     }
 
+    @Unroll
+    def "test FindArticles returns the cursor of the next page only when the page is full"() {
+        given: "a page of two articles"
+        ArticleCursor cursor = ArticleCursor.of(MockTestData.ARTICLE_2)
+        and:
+        articleRepository.findNewestArticlesFilteredBy(null, null, null, null, ArticleProjection.SUMMARY, cursor, limit, 0)
+                >> Flux.just(MockTestData.ARTICLE_1, MockTestData.ARTICLE_2)
+        articleCountRepository.countArticlesFilteredBy(null, null, null) >> Mono.just(4L)
+        userRepository.findAuthorsByArticles(_) >> Mono.just([(MockTestData.AUTHOR_USER.getId()): MockTestData.AUTHOR_USER])
+
+        when: "the service call the findArticles() after a cursor"
+        Mono<MultipleArticlesView> rtn = userArticleService.findArticles(null, (String) null, (String) null, 0, limit, cursor, Optional.empty())
+
+        then: "the next cursor points after the last article of a full page"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals(expectedNextCursor, r.getNextCursor()))
+                .expectComplete().verify()
+
+        where:
+        limit || expectedNextCursor
+        2     || ArticleCursor.of(MockTestData.ARTICLE_2).encode()
+        3     || null
+    }
+
+    def "test StreamArticles streams the views of the page in order, a chunk of authors at a time"() {
+        given: "a page of ten articles of the author"
+        List<Article> articles = (1..10).collect { MockTestData.makeArticle("stream" + it, MockTestData.AUTHOR_USER, null, null) }
+        userRepository.findByUsername(MockTestData.AUTHOR_USER.getUsername()) >> Mono.just(MockTestData.AUTHOR_USER)
+        articleRepository.findNewestArticlesFilteredBy(null, MockTestData.AUTHOR_USER.getId(), null, null,
+                ArticleProjection.SUMMARY, null, 10, 0) >> Flux.fromIterable(articles)
+        and: "the authors are resolved once per chunk"
+        2 * userRepository.findAuthorsByArticles(_) >> Mono.just([(MockTestData.AUTHOR_USER.getId()): MockTestData.AUTHOR_USER])
+        0 * articleCountRepository.countArticlesFilteredBy(*_)
+
+        when: "the service streams the articles of the author"
+        List<ArticleView> views = userArticleService.streamArticles(null, MockTestData.AUTHOR_USER.getUsername(), null,
+                0, 10, null, Optional.empty()).collectList().block()
+
+        then: "the views keep the order of the articles"
+        assertEquals(articles.collect { it.getSlug() }, views.collect { it.getSlug() })
+    }
+
+    def "test MapToMultipleArticlesView keeps the order under random author lookup latency, with bounded lookups"() {
+        given: "a page of fifty articles of ten authors"
+        Random random = new Random()
+        List<User> authors = (1..10).collect { MockTestData.makeUser("author" + it) }
+        List<Article> articles = (1..50).collect { MockTestData.makeArticle("page" + it, authors[random.nextInt(authors.size())], null, null) }
+        and: "each chunk of authors takes a random time to resolve, while the lookups in flight are counted"
+        AtomicInteger inFlight = new AtomicInteger()
+        AtomicInteger maxInFlight = new AtomicInteger()
+        userRepository.findAuthorsByArticles(_) >> { Collection<Article> chunk ->
+            Mono.defer {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max)
+                Mono.just(authors.collectEntries { [(it.getId()): it] })
+                        .delayElement(Duration.ofMillis(random.nextInt(30)))
+                        .doOnSuccess { inFlight.decrementAndGet() }
+            }
+        }
+
+        when: "the page is mapped"
+        MultipleArticlesView view = userArticleService.mapToMultipleArticlesView(articles, 50, 50L, Optional.empty()).block()
+
+        then: "the views are in the order of the articles, and no more chunks than the concurrency were looked up at once"
+        assertEquals(articles.collect { it.getSlug() }, view.getArticles().collect { it.getSlug() })
+        maxInFlight.get() <= 4
+    }
+
+    def "test StreamArticles of an unknown author streams nothing"() {
+        given: "no user with the author name"
+        userRepository.findByUsername("unknown") >> Mono.empty()
+        0 * articleRepository.findNewestArticlesFilteredBy(*_)
+
+        expect: "no article"
+        StepVerifier.create(userArticleService.streamArticles(null, "unknown", null, 0, 10, null, Optional.empty()))
+                .expectComplete().verify()
+    }
+
     def "test AddComment success"() {
         given: "an existing article's slug, a CreateCommentRequest, a current user"
         User currUser = MockTestData.CURRENT_USER
@@ -89,10 +181,14 @@ class UserArticleServiceTest extends Specification {
         CreateCommentRequest createCommentRequest = new CreateCommentRequest(expectedCommentView.getBody())
         and:
         articleRepository.findBySlugOrFail(slug) >> Mono.just(MockTestData.ARTICLE_1)
-        articleRepository.save(_) >> Mono.just(MockTestData.ARTICLE_1)
+        1 * commentRepository.save({ Comment c ->
+            c.getArticleId() == MockTestData.ARTICLE_1.getId() && c.getAuthorId() == currUser.getId()
+        }) >> { Comment c -> Mono.just(c) }
+        0 * articleRepository.save(_)
+        userRepository.findById(currUser.getId()) >> Mono.just(currUser)
 
         when: "the service call the addComment()"
-        Mono<CommentView> rtn = userArticleService.addComment(slug, Mono.just(createCommentRequest), currUser)
+        Mono<CommentView> rtn = userArticleService.addComment(slug, Mono.just(createCommentRequest), currUser.getId())
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -112,14 +208,13 @@ class UserArticleServiceTest extends Specification {
         String slug = articleView1.getSlug()
         Comment expectedComment = MockTestData.COMMENT_11
         String commentId = expectedComment.getId()
-        MockTestData.ARTICLE_1.getComments().add(MockTestData.COMMENT_11)
-        MockTestData.ARTICLE_1.getComments().add(MockTestData.COMMENT_12)
         and:
         articleRepository.findBySlugOrFail(slug) >> Mono.just(MockTestData.ARTICLE_1)
-        articleRepository.save(_) >> Mono.just(MockTestData.ARTICLE_1)
+        commentRepository.findByIdAndArticleId(commentId, MockTestData.ARTICLE_1.getId()) >> Mono.just(expectedComment)
+        1 * commentRepository.delete(expectedComment) >> Mono.empty()
 
         when: "the service call the deleteComment()"
-        Mono<Void> rtn = userArticleService.deleteComment(commentId, slug, authorUser)
+        Mono<Void> rtn = userArticleService.deleteComment(commentId, slug, authorUser.getId())
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -133,13 +228,13 @@ class UserArticleServiceTest extends Specification {
         String slug = articleView1.getSlug()
         Comment expectedComment = MockTestData.COMMENT_11
         String commentId = expectedComment.getId()
-        MockTestData.ARTICLE_1.getComments().add(MockTestData.COMMENT_11)
-        MockTestData.ARTICLE_1.getComments().add(MockTestData.COMMENT_12)
         and:
         articleRepository.findBySlugOrFail(slug) >> Mono.just(MockTestData.ARTICLE_1)
+        commentRepository.findByIdAndArticleId(commentId, MockTestData.ARTICLE_1.getId()) >> Mono.just(expectedComment)
+        0 * commentRepository.delete(_)
 
         when: "the service call the deleteComment()"
-        Mono<Void> rtn = userArticleService.deleteComment(commentId, slug, nonCommentAuthorUser)
+        Mono<Void> rtn = userArticleService.deleteComment(commentId, slug, nonCommentAuthorUser.getId())
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -153,15 +248,15 @@ class UserArticleServiceTest extends Specification {
         User currUser = MockTestData.CURRENT_USER
         ArticleView articleView1 = MockTestData.ARTICLE_VIEW_1
         String slug = articleView1.getSlug()
-        MockTestData.ARTICLE_1.getComments().clear()
-        MockTestData.ARTICLE_1.getComments().add(MockTestData.COMMENT_11)
-        MockTestData.ARTICLE_1.getComments().add(MockTestData.COMMENT_12)
         and:
         articleRepository.findBySlug(slug) >> Mono.just(MockTestData.ARTICLE_1)
-        userRepository.findById(MockTestData.ARTICLE_1.getAuthorId()) >> Mono.just(MockTestData.CURRENT_USER)
+        commentRepository.findOldestCommentsByArticleId(MockTestData.ARTICLE_1.getId(), 0, 20)
+                >> Flux.just(MockTestData.COMMENT_11, MockTestData.COMMENT_12)
+        1 * userRepository.findAllById([MockTestData.CURRENT_USER.getId()] as Set)
+                >> Mono.just([(MockTestData.CURRENT_USER.getId()): MockTestData.CURRENT_USER])
 
         when: "the service call the getComments()"
-        Mono<MultipleCommentsView> rtn = userArticleService.getComments(slug, Optional.of(currUser))
+        Mono<MultipleCommentsView> rtn = userArticleService.getComments(slug, 0, 20, Optional.of(currUser))
 
         then: "return contains following"
         StepVerifier.create(rtn)
@@ -181,6 +276,71 @@ class UserArticleServiceTest extends Specification {
                 .expectComplete().verify()
     }
 
+    def "test GetComments shows each comment with its own author"() {
+        given: "comments by two different users, one of which no longer exists"
+        User otherUser = MockTestData.makeUser("other-commenter")
+        Comment otherComment = MockTestData.makeCommnent("other", otherUser)
+        Comment orphanComment = MockTestData.makeCommnent("orphan", MockTestData.makeUser("deleted"))
+        String slug = MockTestData.ARTICLE_1.getSlug()
+        and:
+        articleRepository.findBySlug(slug) >> Mono.just(MockTestData.ARTICLE_1)
+        commentRepository.findOldestCommentsByArticleId(MockTestData.ARTICLE_1.getId(), 0, 20)
+                >> Flux.just(MockTestData.COMMENT_11, otherComment, orphanComment)
+        userRepository.findAllById(_) >> Mono.just([
+                (MockTestData.CURRENT_USER.getId()): MockTestData.CURRENT_USER,
+                (otherUser.getId()): otherUser])
+
+        when: "the service call the getComments()"
+        Mono<MultipleCommentsView> rtn = userArticleService.getComments(slug, 0, 20, Optional.empty())
+
+        then: "the comments keep their order, each with its author, skipping the orphan"
+        StepVerifier.create(rtn)
+                .assertNext(r -> {
+                    assertEquals([MockTestData.COMMENT_11.getId(), otherComment.getId()], r.getComments()*.getId())
+                    assertEquals([MockTestData.CURRENT_USER.getUsername(), otherUser.getUsername()],
+                            r.getComments()*.getAuthor()*.getUsername())
+                })
+                .expectComplete().verify()
+    }
+
+    def "test MapToArticleViews resolves authors of the page at once"() {
+        given: "articles of two authors, one of which no longer exists, and a viewer user"
+        User viewerUser = MockTestData.CURRENT_USER
+        User otherAuthor = MockTestData.makeUser("other-author")
+        Article article1 = MockTestData.ARTICLE_1
+        Article article2 = MockTestData.makeArticle("2", otherAuthor, null, null)
+        Article article3 = MockTestData.ARTICLE_2
+        Article orphan = MockTestData.makeArticle("orphan", MockTestData.makeUser("deleted"), null, null)
+        List<Article> articles = [article1, article2, orphan, article3]
+
+        when: "the service call the mapToArticleViews()"
+        Flux<ArticleView> rtn = userArticleService.mapToArticleViews(articles, Optional.of(viewerUser))
+
+        then: "authors are looked up once, and views keep the article order"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals(article1.getSlug(), r.getSlug()))
+                .assertNext(r -> {
+                    assertEquals(article2.getSlug(), r.getSlug())
+                    assertEquals(otherAuthor.getUsername(), r.getAuthor().getUsername())
+                })
+                .assertNext(r -> assertEquals(article3.getSlug(), r.getSlug()))
+                .expectComplete().verify()
+        1 * userRepository.findAuthorsByArticles(articles) >> Mono.just([
+                (MockTestData.AUTHOR_USER.getId()): MockTestData.AUTHOR_USER,
+                (otherAuthor.getId()): otherAuthor])
+        0 * userRepository.findAuthorByArticle(_)
+        0 * userRepository.findById(_)
+    }
+
+    def "test MapToArticleViews of an empty page skips the author lookup"() {
+        when: "the service call the mapToArticleViews() with no article"
+        Flux<ArticleView> rtn = userArticleService.mapToArticleViews([], Optional.empty())
+
+        then: "nothing is returned"
+        StepVerifier.create(rtn).expectComplete().verify()
+        0 * userRepository.findAuthorsByArticles(_)
+    }
+
     def "test MapToArticleView with optional viewer user"() {
         given: "an article, a viewer user"
         User viewerUser = MockTestData.CURRENT_USER
@@ -235,6 +395,26 @@ class UserArticleServiceTest extends Specification {
                 .expectComplete().verify()
     }
 
+    def "test MapToArticleView with viewer id resolves the author and the viewer at once"() {
+        given: "an article favorited by the viewer, who follows its author"
+        User authorUser = MockTestData.makeUser("author-of-favorited")
+        User viewerUser = MockTestData.makeUser("viewer-of-favorited")
+        viewerUser.follow(authorUser)
+        Article article = MockTestData.makeArticle("favorited", authorUser, null, [viewerUser.getId()])
+        and: "both users are resolved with a single lookup"
+        1 * userRepository.findAllById([authorUser.getId(), viewerUser.getId()] as Set) >>
+                Mono.just([(authorUser.getId()): authorUser, (viewerUser.getId()): viewerUser])
+        0 * userRepository.findAuthorByArticle(_)
+
+        when: "the service call the mapToArticleView()"
+        ArticleView rtn = userArticleService.mapToArticleView(article, viewerUser.getId()).block()
+
+        then: "the view is the one of the viewer"
+        assertEquals(authorUser.getUsername(), rtn.getAuthor().getUsername())
+        assertTrue(rtn.getAuthor().isFollowing())
+        assertTrue(rtn.getFavorited())
+    }
+
     def "test MapToArticleView without user"() {
         given: "an article, a viewer user"
         User viewerUser = MockTestData.CURRENT_USER
@@ -0,0 +1,115 @@
+package com.realworld.webfluxfn.service.user
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.http.HttpStatus
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder
+import org.springframework.web.server.ResponseStatusException
+import reactor.core.publisher.Mono
+import reactor.test.StepVerifier
+import spock.lang.Specification
+import spock.lang.Unroll
+import spock.util.concurrent.PollingConditions
+
+import static junit.framework.TestCase.assertEquals
+import static junit.framework.TestCase.assertTrue
+
+class PasswordServiceTest extends Specification {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    private final PasswordService passwordService = new PasswordService(new PasswordHashingProperties(4, 1, 10), meterRegistry)
+
+    void cleanup() {
+        passwordService.dispose()
+    }
+
+    def "test EncodePassword is matched by MatchesRowPasswordWithEncodedPassword"() {
+        when: "a password is encoded then matched"
+        Mono<List<Boolean>> rtn = passwordService.encodePassword("password")
+                .flatMap(encoded -> Mono.zip(
+                        passwordService.matchesRowPasswordWithEncodedPassword("password", encoded),
+                        passwordService.matchesRowPasswordWithEncodedPassword("other password", encoded))
+                        .map(matches -> [matches.getT1(), matches.getT2()]))
+
+        then: "only the same password matches"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals([true, false], r))
+                .expectComplete().verify()
+    }
+
+    def "test EncodePassword runs on the hashing scheduler and is timed"() {
+        when: "a password is encoded"
+        String threadName = passwordService.encodePassword("password")
+                .map(encoded -> Thread.currentThread().getName())
+                .block()
+
+        then: "the hashing ran off the calling thread, and its queue and hashing times are recorded"
+        assertTrue(threadName.startsWith("password-hashing"))
+        assertEquals(1L, meterRegistry.get("password.hashing.queued").tag("operation", "encode").timer().count())
+        assertEquals(1L, meterRegistry.get("password.hashing.time").tag("operation", "encode").timer().count())
+    }
+
+    def "test EncodePassword prefixes the hash with its encoder and the configured cost"() {
+        when: "a password is encoded"
+        String encoded = passwordService.encodePassword("password").block()
+
+        then: "the hash does not need to be rehashed"
+        assertTrue(encoded.startsWith('{bcrypt}$2a$04$'))
+        !passwordService.needsRehash(encoded)
+    }
+
+    def "test NeedsRehash on hashes of another encoder or cost"() {
+        given: "a hash of another cost"
+        PasswordService strongerPasswordService = new PasswordService(new PasswordHashingProperties(5, 1, 10), meterRegistry)
+        String strongerEncoded = strongerPasswordService.encodePassword("password").block()
+        strongerPasswordService.dispose()
+
+        expect: "hashes not matching the configured hashing need to be rehashed"
+        passwordService.needsRehash(strongerEncoded)
+        passwordService.needsRehash(strongerEncoded.substring('{bcrypt}'.length()))
+        passwordService.needsRehash('{bcrypt}malformed')
+    }
+
+    def "test MatchesRowPasswordWithEncodedPassword matches hashes stored without a prefix"() {
+        given: "a hash stored before the prefix was introduced"
+        String legacyEncoded = new BCryptPasswordEncoder(4).encode("password")
+
+        expect: "it is matched by BCrypt"
+        passwordService.matchesRowPasswordWithEncodedPassword("password", legacyEncoded).block()
+        !passwordService.matchesRowPasswordWithEncodedPassword("other password", legacyEncoded).block()
+    }
+
+    def "test EncodePassword fails fast with 503 when the hashing is saturated"() {
+        given: "a hashing service with one thread and one waiting hashing, both taken by slow hashings"
+        PasswordService saturatedPasswordService = new PasswordService(new PasswordHashingProperties(12, 1, 1), meterRegistry)
+        def running = saturatedPasswordService.encodePassword("password").subscribe()
+        new PollingConditions(timeout: 5).eventually {
+            assert meterRegistry.timer("password.hashing.queued", "operation", "encode").count() == 1
+        }
+        def queued = saturatedPasswordService.encodePassword("password").subscribe()
+
+        when: "another hashing is requested"
+        saturatedPasswordService.encodePassword("password").block()
+
+        then: "it is rejected as unavailable and counted"
+        ResponseStatusException e = thrown()
+        e.getStatus() == HttpStatus.SERVICE_UNAVAILABLE
+        meterRegistry.counter("password.hashing.rejected").count() == 1
+
+        cleanup:
+        running.dispose()
+        queued.dispose()
+        saturatedPasswordService.dispose()
+    }
+
+    @Unroll
+    def "test the queue capacity of #queueCapacity is split across #parallelism hashing threads"() {
+        expect: "each thread queues its share of the capacity, rounded up"
+        new PasswordHashingProperties(4, parallelism, queueCapacity).getQueueCapacityPerThread() == perThread
+
+        where:
+        parallelism | queueCapacity || perThread
+        1           | 10            || 10
+        4           | 1000          || 250
+        4           | 10            || 3
+        8           | 1             || 1
+    }
+}
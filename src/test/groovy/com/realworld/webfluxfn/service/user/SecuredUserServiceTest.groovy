@@ -7,6 +7,7 @@ import com.realworld.webfluxfn.dto.request.UserRegistrationRequest
 import com.realworld.webfluxfn.dto.view.UserView
 import com.realworld.webfluxfn.exception.InvalidRequestException
 import com.realworld.webfluxfn.persistence.entity.User
+import com.realworld.webfluxfn.persistence.repository.CachedUserRepository
 import com.realworld.webfluxfn.persistence.repository.UserRepository
 import reactor.core.publisher.Mono
 import reactor.test.StepVerifier
@@ -17,10 +18,11 @@ import static junit.framework.TestCase.assertEquals
 
 class SecuredUserServiceTest extends Specification {
     private final UserRepository userRepository = Mock()
+    private final CachedUserRepository cachedUserRepository = Mock()
     private final PasswordService passwordService = Mock()
     private final UserTokenProvider tokenProvider = Mock()
 
-    private final SecuredUserService securedUserService = new SecuredUserService(userRepository, passwordService, tokenProvider)
+    private final SecuredUserService securedUserService = new SecuredUserService(userRepository, cachedUserRepository, passwordService, tokenProvider)
 
     void setup() {
     }
@@ -37,7 +39,7 @@ class SecuredUserServiceTest extends Specification {
         and:
         userRepository.findByEmailOrFail(userAuthenticationRequest.getEmail()) >> Mono.just(MockTestData.AUTHOR_USER)
         passwordService.matchesRowPasswordWithEncodedPassword(
-                userAuthenticationRequest.getPassword(), "author_password") >> true
+                userAuthenticationRequest.getPassword(), "author_password") >> Mono.just(true)
         tokenProvider.getToken(MockTestData.AUTHOR_USER.getId()) >> expectedUserView.getToken()
 
         when: "the service calls to login"
@@ -51,6 +53,52 @@ class SecuredUserServiceTest extends Specification {
                 .expectComplete().verify()
     }
 
+    def "test Login rehashes a password of another hashing"() {
+        given: "a userLoginRequest"
+        UserView expectedUserView = MockTestData.AUTHOR_USER_VIEW
+        UserAuthenticationRequest userAuthenticationRequest = UserAuthenticationRequest.builder()
+                .email(expectedUserView.email).password("password").build()
+        and: "the stored password is hashed with another cost"
+        userRepository.findByEmailOrFail(userAuthenticationRequest.getEmail()) >> Mono.just(MockTestData.AUTHOR_USER)
+        passwordService.matchesRowPasswordWithEncodedPassword("password", "author_password") >> Mono.just(true)
+        passwordService.needsRehash("author_password") >> true
+        passwordService.encodePassword("password") >> Mono.just("rehashed_password")
+        tokenProvider.getToken(MockTestData.AUTHOR_USER.getId()) >> expectedUserView.getToken()
+        and: "the stored password is replaced only if unchanged meanwhile"
+        1 * userRepository.replaceEncodedPassword(MockTestData.AUTHOR_USER.getId(), "author_password", "rehashed_password") >> Mono.just(true)
+        1 * cachedUserRepository.evict(MockTestData.AUTHOR_USER)
+
+        when: "the service calls to login"
+        Mono<UserView> rtn = securedUserService.login(Mono.just(userAuthenticationRequest))
+
+        then: "the user is logged in"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals(expectedUserView, r))
+                .expectComplete().verify()
+    }
+
+    def "test Login succeeds when the rehash fails"() {
+        given: "a userLoginRequest"
+        UserView expectedUserView = MockTestData.AUTHOR_USER_VIEW
+        UserAuthenticationRequest userAuthenticationRequest = UserAuthenticationRequest.builder()
+                .email(expectedUserView.email).password("password").build()
+        and: "the rehashed password cannot be stored"
+        userRepository.findByEmailOrFail(userAuthenticationRequest.getEmail()) >> Mono.just(MockTestData.AUTHOR_USER)
+        passwordService.matchesRowPasswordWithEncodedPassword("password", "author_password") >> Mono.just(true)
+        passwordService.needsRehash("author_password") >> true
+        passwordService.encodePassword("password") >> Mono.just("rehashed_password")
+        userRepository.replaceEncodedPassword(_, _, _) >> Mono.error(new IllegalStateException("unavailable"))
+        tokenProvider.getToken(MockTestData.AUTHOR_USER.getId()) >> expectedUserView.getToken()
+
+        when: "the service calls to login"
+        Mono<UserView> rtn = securedUserService.login(Mono.just(userAuthenticationRequest))
+
+        then: "the user is logged in anyway"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals(expectedUserView, r))
+                .expectComplete().verify()
+    }
+
     def "test Login failed on unmatched username password"() {
         given: "a userLoginRequest"
         UserView expectedUserView = MockTestData.AUTHOR_USER_VIEW
@@ -60,7 +108,7 @@ class SecuredUserServiceTest extends Specification {
         and:
         userRepository.findByEmailOrFail(userAuthenticationRequest.getEmail()) >> Mono.just(MockTestData.AUTHOR_USER)
         passwordService.matchesRowPasswordWithEncodedPassword(
-                userAuthenticationRequest.getPassword(), "author_password") >> false
+                userAuthenticationRequest.getPassword(), "author_password") >> Mono.just(false)
 
         when: "the service calls to login"
         Mono<UserView> rtn = securedUserService.login(userAuthenticationRequestMono)
@@ -80,8 +128,8 @@ class SecuredUserServiceTest extends Specification {
         and:
         userRepository.existsByUsername(userRegistrationRequest.getUsername()) >> Mono.just(false)
         userRepository.existsByEmail(userRegistrationRequest.getEmail()) >> Mono.just(false)
-        passwordService.encodePassword(userRegistrationRequest.getPassword()) >> "author_password"
-        userRepository.save(_) >> Mono.just(MockTestData.AUTHOR_USER)
+        passwordService.encodePassword(userRegistrationRequest.getPassword()) >> Mono.just("author_password")
+        userRepository.insert(_ as User) >> Mono.just(MockTestData.AUTHOR_USER)
         tokenProvider.getToken(MockTestData.AUTHOR_USER.getId()) >> expectedUserView.getToken()
 
         when: "the service calls to signup the user"
@@ -108,8 +156,12 @@ class SecuredUserServiceTest extends Specification {
         securedUserService.updateUser(updateUserRequest, currentUser) >> Mono.just(MockTestData.AUTHOR_USER)
         userRepository.existsByUsername(updateUserRequest.getUsername()) >> Mono.just(false)
         userRepository.existsByEmail(updateUserRequest.getEmail()) >> Mono.just(false)
-        passwordService.encodePassword(updateUserRequest.getPassword()) >> "author_password"
-        userRepository.save(_) >> Mono.just(MockTestData.AUTHOR_USER)
+        passwordService.encodePassword(updateUserRequest.getPassword()) >> Mono.just("author_password")
+        and: "only the profile is set, the follows being left untouched"
+        0 * userRepository.save(_)
+        1 * userRepository.updateProfile(currentUser) >> Mono.just(MockTestData.AUTHOR_USER)
+        and: "the updated user is evicted from the user cache"
+        1 * cachedUserRepository.evict(MockTestData.AUTHOR_USER)
 
         when: "the service calls to update user"
         Mono<User> rtn = securedUserService.updateUser(updateUserRequestMono, currentUser)
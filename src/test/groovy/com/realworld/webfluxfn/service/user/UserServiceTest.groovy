@@ -6,7 +6,10 @@ import com.realworld.webfluxfn.dto.request.UserAuthenticationRequest
 import com.realworld.webfluxfn.dto.request.UserRegistrationRequest
 import com.realworld.webfluxfn.dto.view.ProfileView
 import com.realworld.webfluxfn.dto.view.UserView
+import com.realworld.webfluxfn.persistence.repository.CachedUserRepository
+import com.realworld.webfluxfn.persistence.repository.FollowRepository
 import com.realworld.webfluxfn.persistence.repository.UserRepository
+import com.realworld.webfluxfn.service.article.TimelineService
 import reactor.core.publisher.Mono
 import reactor.test.StepVerifier
 import spock.lang.Specification
@@ -17,7 +20,11 @@ import static junit.framework.TestCase.assertEquals
 class UserServiceTest extends Specification {
     private final SecuredUserService securedUserService = Mock()
     private final UserRepository userRepository = Mock()
-    private final UserService userService = new UserService(securedUserService, userRepository)
+    private final CachedUserRepository cachedUserRepository = Mock()
+    private final FollowRepository followRepository = Mock()
+    private final TimelineService timelineService = Mock()
+    private final UserService userService = new UserService(securedUserService, userRepository, cachedUserRepository,
+            followRepository, timelineService)
 
     void setup() {
     }
@@ -32,7 +39,7 @@ class UserServiceTest extends Specification {
         String profileUserName = expectedProfile.getUsername()
         User viewUser = MockTestData.CURRENT_USER
         and:
-        userRepository.findByUsernameOrFail (profileUserName) >> Mono.just(MockTestData.AUTHOR_USER)
+        cachedUserRepository.findByUsernameOrFail (profileUserName) >> Mono.just(MockTestData.AUTHOR_USER)
 
         when: "the service retrieves user profile"
         Mono<ProfileView> rtn = userService.getProfile(profileUserName, viewUser)
@@ -50,7 +57,7 @@ class UserServiceTest extends Specification {
         ProfileView expectedProfile = MockTestData.AUTHOR_USER_PROFILE
         String profileUserName = expectedProfile.getUsername()
         and:
-        userRepository.findByUsernameOrFail (profileUserName) >> Mono.just(MockTestData.AUTHOR_USER)
+        cachedUserRepository.findByUsernameOrFail (profileUserName) >> Mono.just(MockTestData.AUTHOR_USER)
 
         when: "the service retrieves user profile"
         Mono<ProfileView> rtn = userService.getProfile(profileUserName)
@@ -134,32 +141,119 @@ class UserServiceTest extends Specification {
         ProfileView expectedProfile = MockTestData.AUTHOR_USER_PROFILE
         String followingUserName = expectedProfile.getUsername()
         User followerUser = MockTestData.CURRENT_USER
+        String followeeId = MockTestData.AUTHOR_USER.getId()
         and:
-        userRepository.findByUsernameOrFail (followingUserName) >> Mono.just(MockTestData.AUTHOR_USER)
-        userRepository.save(_)  >> Mono.just(followerUser)
+        cachedUserRepository.findByUsernameOrFail (followingUserName) >> Mono.just(MockTestData.AUTHOR_USER)
+        and: "the follow is added to the following set, indexed and counted"
+        1 * userRepository.addFollowingId(followerUser.getId(), followeeId) >> Mono.just(true)
+        1 * followRepository.addFollow(followerUser.getId(), followeeId) >> Mono.just(true)
+        1 * userRepository.incrementFollowersCount(followeeId, 1) >> Mono.empty()
+        0 * userRepository.save(_)
+        and: "the articles of the followed user are added to the feed of the follower"
+        1 * timelineService.addFollow(followerUser.getId(), MockTestData.AUTHOR_USER) >> Mono.empty()
+        and: "both users are evicted from the user cache"
+        1 * cachedUserRepository.evict(followerUser.getId())
+        1 * cachedUserRepository.evict(MockTestData.AUTHOR_USER)
 
         when: "the service to setup following relation"
-        Mono<ProfileView> rtn = userService.follow(followingUserName, followerUser)
+        Mono<ProfileView> rtn = userService.follow(followingUserName, followerUser.getId())
 
         then: "the service returns following"
         StepVerifier.create(rtn)
                 .assertNext(r-> {
-                    assertEquals(expectedProfile, r)
+                    assertEquals(expectedProfile.getUsername(), r.getUsername())
+                    assertEquals(true, r.isFollowing())
                 })
                 .expectComplete().verify()
     }
 
+    def "Follow an already followed user"() {
+        given: "a follower already following the user, with the follow indexed"
+        String followingUserName = MockTestData.AUTHOR_USER.getUsername()
+        User followerUser = MockTestData.CURRENT_USER
+        String followeeId = MockTestData.AUTHOR_USER.getId()
+        and:
+        cachedUserRepository.findByUsernameOrFail (followingUserName) >> Mono.just(MockTestData.AUTHOR_USER)
+        userRepository.addFollowingId(followerUser.getId(), followeeId) >> Mono.just(false)
+        followRepository.addFollow(followerUser.getId(), followeeId) >> Mono.just(false)
+        and: "the follow is not counted again"
+        0 * userRepository.incrementFollowersCount(_, _)
+        and: "the feed of the follower is completed again"
+        1 * timelineService.addFollow(followerUser.getId(), MockTestData.AUTHOR_USER) >> Mono.empty()
+
+        when: "the service to setup following relation"
+        Mono<ProfileView> rtn = userService.follow(followingUserName, followerUser.getId())
+
+        then: "the service returns following"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals(true, r.isFollowing()))
+                .expectComplete().verify()
+    }
+
+    def "Follow again after a follow that failed halfway"() {
+        given: "a follower whose following set is updated but whose follow is not indexed"
+        String followingUserName = MockTestData.AUTHOR_USER.getUsername()
+        User followerUser = MockTestData.CURRENT_USER
+        String followeeId = MockTestData.AUTHOR_USER.getId()
+        and:
+        cachedUserRepository.findByUsernameOrFail (followingUserName) >> Mono.just(MockTestData.AUTHOR_USER)
+        userRepository.addFollowingId(followerUser.getId(), followeeId) >> Mono.just(false)
+        and: "the follow is indexed and counted"
+        1 * followRepository.addFollow(followerUser.getId(), followeeId) >> Mono.just(true)
+        1 * userRepository.incrementFollowersCount(followeeId, 1) >> Mono.empty()
+        1 * timelineService.addFollow(followerUser.getId(), MockTestData.AUTHOR_USER) >> Mono.empty()
+
+        when: "the service to setup following relation"
+        Mono<ProfileView> rtn = userService.follow(followingUserName, followerUser.getId())
+
+        then: "the service returns following"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals(true, r.isFollowing()))
+                .expectComplete().verify()
+    }
+
+    def "Follow evicts the users even when it fails"() {
+        given: "a follow whose count fails to be written"
+        String followingUserName = MockTestData.AUTHOR_USER.getUsername()
+        User followerUser = MockTestData.CURRENT_USER
+        String followeeId = MockTestData.AUTHOR_USER.getId()
+        and:
+        cachedUserRepository.findByUsernameOrFail (followingUserName) >> Mono.just(MockTestData.AUTHOR_USER)
+        userRepository.addFollowingId(followerUser.getId(), followeeId) >> Mono.just(true)
+        followRepository.addFollow(followerUser.getId(), followeeId) >> Mono.just(true)
+        userRepository.incrementFollowersCount(followeeId, 1) >> Mono.error(new IllegalStateException("unavailable"))
+        timelineService.addFollow(followerUser.getId(), MockTestData.AUTHOR_USER) >> Mono.empty()
+        and: "both users are evicted from the user cache"
+        1 * cachedUserRepository.evict(followerUser.getId())
+        1 * cachedUserRepository.evict(MockTestData.AUTHOR_USER)
+
+        when: "the service to setup following relation"
+        Mono<ProfileView> rtn = userService.follow(followingUserName, followerUser.getId())
+
+        then: "the error is returned"
+        StepVerifier.create(rtn)
+                .expectError(IllegalStateException)
+                .verify()
+    }
+
     def "Unfollow"() {
         given: "following user name, and follower user"
         ProfileView expectedProfile = MockTestData.AUTHOR_USER_PROFILE
         String followingUserName = expectedProfile.getUsername()
         User followerUser = MockTestData.CURRENT_USER
+        String followeeId = MockTestData.AUTHOR_USER.getId()
         and:
-        userRepository.findByUsernameOrFail(followingUserName) >> Mono.just(MockTestData.AUTHOR_USER)
-        userRepository.save(_)  >> Mono.just(MockTestData.AUTHOR_USER) >> Mono.just(followerUser)
+        cachedUserRepository.findByUsernameOrFail(followingUserName) >> Mono.just(MockTestData.AUTHOR_USER)
+        and: "the follow is removed from the following set, the index and the count"
+        1 * userRepository.removeFollowingId(followerUser.getId(), followeeId) >> Mono.just(true)
+        1 * followRepository.removeFollow(followerUser.getId(), followeeId) >> Mono.just(true)
+        1 * userRepository.incrementFollowersCount(followeeId, -1) >> Mono.empty()
+        1 * timelineService.removeFollow(followerUser.getId(), followeeId) >> Mono.empty()
+        1 * cachedUserRepository.evict(followerUser.getId())
+        1 * cachedUserRepository.evict(MockTestData.AUTHOR_USER)
 
         when: "the service to remove following relation"
-        Mono<ProfileView> rtn = userService.unfollow(followingUserName, followerUser)
+        Mono<ProfileView> rtn = userService.unfollow(followingUserName, followerUser.getId())
 
         then: "the service returns following"
         StepVerifier.create(rtn)
@@ -171,4 +265,26 @@ class UserServiceTest extends Specification {
                 })
                 .expectComplete().verify()
     }
+
+    def "Unfollow a user that is not followed"() {
+        given: "a follower not following the user"
+        String followingUserName = MockTestData.AUTHOR_USER.getUsername()
+        User followerUser = MockTestData.CURRENT_USER
+        String followeeId = MockTestData.AUTHOR_USER.getId()
+        and:
+        cachedUserRepository.findByUsernameOrFail(followingUserName) >> Mono.just(MockTestData.AUTHOR_USER)
+        userRepository.removeFollowingId(followerUser.getId(), followeeId) >> Mono.just(false)
+        followRepository.removeFollow(followerUser.getId(), followeeId) >> Mono.just(false)
+        and: "the follow is not uncounted"
+        0 * userRepository.incrementFollowersCount(_, _)
+        1 * timelineService.removeFollow(followerUser.getId(), followeeId) >> Mono.empty()
+
+        when: "the service to remove following relation"
+        Mono<ProfileView> rtn = userService.unfollow(followingUserName, followerUser.getId())
+
+        then: "the service returns not following"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals(false, r.isFollowing()))
+                .expectComplete().verify()
+    }
 }
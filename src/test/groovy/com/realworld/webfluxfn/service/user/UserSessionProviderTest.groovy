@@ -0,0 +1,91 @@
+package com.realworld.webfluxfn.service.user
+
+import com.realworld.webfluxfn.MockTestData
+import com.realworld.webfluxfn.persistence.entity.User
+import com.realworld.webfluxfn.persistence.repository.CachedUserRepository
+import com.realworld.webfluxfn.security.TokenPrincipal
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.context.ReactiveSecurityContextHolder
+import org.springframework.web.server.ServerWebExchange
+import org.springframework.web.server.WebFilterChain
+import reactor.core.publisher.Mono
+import reactor.test.StepVerifier
+import reactor.util.context.Context
+import spock.lang.Specification
+
+import static junit.framework.TestCase.assertEquals
+
+class UserSessionProviderTest extends Specification {
+    private final CachedUserRepository userRepository = Mock()
+    private final UserSessionProvider userSessionProvider = new UserSessionProvider(userRepository)
+    private final UserSessionWebFilter userSessionWebFilter = new UserSessionWebFilter(userSessionProvider)
+
+    private static final User CURRENT_USER = MockTestData.CURRENT_USER
+    private static final Context AUTHENTICATED = ReactiveSecurityContextHolder.withAuthentication(
+            new UsernamePasswordAuthenticationToken(new TokenPrincipal(CURRENT_USER.getId(), "current_token"), "current_token"))
+
+    def "test GetCurrentUserOrEmpty without web filter resolves user on every call"() {
+        given: "the repository is called for each of them"
+        2 * userRepository.findById(CURRENT_USER.getId()) >> Mono.just(CURRENT_USER)
+
+        when: "the current user is requested twice"
+        Mono<User> rtn = userSessionProvider.getCurrentUserOrEmpty()
+                .then(userSessionProvider.getCurrentUserOrEmpty())
+                .contextWrite(AUTHENTICATED)
+
+        then: "the current user is returned"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals(CURRENT_USER, r))
+                .expectComplete().verify()
+    }
+
+    def "test GetCurrentUserSessionOrEmpty is resolved once per exchange"() {
+        given: "a handler which asks for the current user several times"
+        WebFilterChain chain = { exchange ->
+            userSessionProvider.getCurrentUserOrEmpty()
+                    .switchIfEmpty(Mono.error(new IllegalStateException("no current user")))
+                    .then(userSessionProvider.getCurrentUserSessionOrEmpty())
+                    .doOnNext(session -> assertEquals("current_token", session.token()))
+                    .then(userSessionProvider.getCurrentUserOrEmpty())
+                    .then()
+        }
+        and: "the repository is called only once"
+        1 * userRepository.findById(CURRENT_USER.getId()) >> Mono.just(CURRENT_USER)
+
+        when: "the exchange goes through the web filter"
+        Mono<Void> rtn = userSessionWebFilter.filter(Mock(ServerWebExchange), chain).contextWrite(AUTHENTICATED)
+
+        then: "the exchange completes"
+        StepVerifier.create(rtn).expectComplete().verify()
+    }
+
+    def "test GetCurrentUserOrEmpty is empty for anonymous exchange"() {
+        given: "a handler which asks for the current user with an anonymous fallback"
+        WebFilterChain chain = { exchange ->
+            userSessionProvider.getCurrentUserOrEmpty()
+                    .switchIfEmpty(Mono.defer(() -> userSessionProvider.getCurrentUserOrEmpty()))
+                    .then()
+        }
+        and: "the repository is never called"
+        0 * userRepository.findById(_)
+
+        when: "the exchange goes through the web filter without authentication"
+        Mono<Void> rtn = userSessionWebFilter.filter(Mock(ServerWebExchange), chain)
+
+        then: "the exchange completes"
+        StepVerifier.create(rtn).expectComplete().verify()
+    }
+
+    def "test GetCurrentUserIdOrEmpty reads the token without loading the user"() {
+        given: "the repository is never called"
+        0 * userRepository.findById(_)
+
+        when: "the current user id is requested"
+        Mono<String> rtn = userSessionProvider.getCurrentUserIdOrEmpty().contextWrite(AUTHENTICATED)
+
+        then: "the id of the token is returned"
+        StepVerifier.create(rtn)
+                .assertNext(r -> assertEquals(CURRENT_USER.getId(), r))
+                .expectComplete().verify()
+    }
+}
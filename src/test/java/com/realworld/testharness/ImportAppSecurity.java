@@ -1,9 +1,14 @@
 package com.realworld.testharness;
 
+import com.realworld.webfluxfn.security.CachedTokenValidator;
 import com.realworld.webfluxfn.security.JwtConfig;
 import com.realworld.webfluxfn.security.SecurityConfig;
 import com.realworld.webfluxfn.security.JwtSigner;
 import com.realworld.webfluxfn.security.TokenExtractor;
+import com.realworld.webfluxfn.security.TokenVerificationService;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
 import org.springframework.context.annotation.Import;
 
 import java.lang.annotation.ElementType;
@@ -11,7 +16,9 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
-@Import({SecurityConfig.class, TokenExtractor.class, JwtSigner.class, JwtConfig.class})
+@Import({SecurityConfig.class, TokenExtractor.class, JwtSigner.class, CachedTokenValidator.class,
+        TokenVerificationService.class, JwtConfig.class})
+@ImportAutoConfiguration({MetricsAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class})
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface ImportAppSecurity {
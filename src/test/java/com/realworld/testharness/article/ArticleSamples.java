@@ -19,7 +19,7 @@ public class ArticleSamples {
         return new CreateArticleRequest()
                 .setBody(DEFAULT_ARTICLE_BODY)
                 .setDescription(DEFAULT_ARTICLE_DESCRIPTION)
-                .setTitle(DEFAULT_ARTICLE_TITLE)
+                .setTitle(uniqueTitle())
                 .setTagList(DEFAULT_TAG_LIST);
     }
 
@@ -28,11 +28,18 @@ public class ArticleSamples {
                 .id(UUID.randomUUID().toString())
                 .body(DEFAULT_ARTICLE_BODY)
                 .description(DEFAULT_ARTICLE_DESCRIPTION)
-                .title(DEFAULT_ARTICLE_TITLE)
+                .title(uniqueTitle())
                 .tags(DEFAULT_TAG_LIST)
                 .createdAt(Instant.now())
                 .updatedAt(Instant.now())
                 .authorId(UserSamples.SAMPLE_USER_ID)
                 .favoritingUserIds(null);
     }
+
+    /**
+     * Slugs are unique, so every sample article gets its own title.
+     */
+    private static String uniqueTitle() {
+        return DEFAULT_ARTICLE_TITLE + " " + UUID.randomUUID();
+    }
 }
@@ -4,7 +4,9 @@ import com.realworld.webfluxfn.dto.request.UpdateUserRequest;
 import com.realworld.webfluxfn.dto.request.UserAuthenticationRequest;
 import com.realworld.webfluxfn.dto.request.UserRegistrationRequest;
 import com.realworld.webfluxfn.persistence.entity.User;
+import com.realworld.webfluxfn.service.user.PasswordHashingProperties;
 import com.realworld.webfluxfn.service.user.PasswordService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import java.util.ArrayList;
 import java.util.UUID;
@@ -15,7 +17,8 @@ public class UserSamples {
     public static final String SAMPLE_EMAIL = "testemail@gmail.com";
     public static final String SAMPLE_PASSWORD = "testpassword";
     public static final String SAMPLE_USER_ID = UUID.randomUUID().toString();
-    private static final PasswordService passwordService = new PasswordService();
+    private static final PasswordService passwordService = new PasswordService(
+            new PasswordHashingProperties(4, 1, 100), new SimpleMeterRegistry());
 
     public static UserRegistrationRequest sampleUserRegistrationRequest() {
         return UserRegistrationRequest.builder()
@@ -31,7 +34,7 @@ public class UserSamples {
     }
 
     public static User.UserBuilder sampleUser(PasswordService passwordService) {
-        var encodePassword = passwordService.encodePassword(SAMPLE_PASSWORD);
+        var encodePassword = passwordService.encodePassword(SAMPLE_PASSWORD).block();
         return User.builder()
                 .id(SAMPLE_USER_ID)
                 .username(SAMPLE_USERNAME)
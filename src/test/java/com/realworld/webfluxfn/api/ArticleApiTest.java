@@ -12,6 +12,8 @@ import com.realworld.webfluxfn.dto.request.UpdateArticleRequest;
 import com.realworld.webfluxfn.dto.view.ProfileView;
 import com.realworld.webfluxfn.dto.view.UserView;
 import com.realworld.webfluxfn.persistence.repository.ArticleRepository;
+import com.realworld.webfluxfn.persistence.repository.CachedTagRepository;
+import com.realworld.webfluxfn.persistence.repository.CommentRepository;
 import com.realworld.webfluxfn.persistence.repository.TagRepository;
 import com.realworld.webfluxfn.persistence.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -43,6 +45,12 @@ class ArticleApiTest {
     @Autowired
     TagRepository tagRepository;
 
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    CachedTagRepository cachedTagRepository;
+
     UserApiTestClient userApiTestClient;
 
     ArticleApiTestClient articleApiTestClient;
@@ -54,6 +62,8 @@ class ArticleApiTest {
         userRepository.deleteAll().block();
         articleRepository.deleteAll().block();
         tagRepository.deleteAll().block();
+        commentRepository.deleteAll().block();
+        cachedTagRepository.refresh().block();
     }
 
     @Test
@@ -121,7 +131,8 @@ class ArticleApiTest {
         var resultBody = articleApiTestClient.feed(follower.getToken(), 1, 2).getResponseBody();
 
         assert resultBody != null;
-        assertThat(resultBody.getArticlesCount()).isEqualTo(2);
+        assertThat(resultBody.getArticlesCount()).isEqualTo(3);
+        assertThat(resultBody.getArticles()).hasSize(2);
         var hasRightAuthor = resultBody.getArticles().stream()
                 .map(ArticleView::getAuthor)
                 .allMatch(it -> it.getUsername().equals(followingUser.getUsername()));
@@ -166,11 +177,13 @@ class ArticleApiTest {
         var article = articleApiTestClient.createArticle(ArticleSamples.sampleCreateArticleRequest(), user.getToken());
         assert article != null;
         var slug = article.getSlug();
+        articleApiTestClient.addComment(slug, "comment", user.getToken());
 
         articleApiTestClient.deleteArticle(slug, user.getToken());
 
         var articlesCount = articleRepository.count().block();
         assertThat(articlesCount).isZero();
+        assertThat(commentRepository.count().block()).isZero();
     }
 
     @Test
@@ -185,9 +198,9 @@ class ArticleApiTest {
 
         assertThat(commentView.getBody()).isEqualTo(request.getBody());
         assertThat(commentView.getAuthor().getUsername()).isEqualTo(user.getUsername());
-        var savedArticle = articleRepository.findAll().blockFirst();
-        assert savedArticle != null;
-        assertThat(savedArticle.getComments()).isNotEmpty();
+        var savedComment = commentRepository.findById(commentView.getId()).block();
+        assert savedComment != null;
+        assertThat(savedComment.getArticleId()).isEqualTo(articleRepository.findBySlug(article.getSlug()).block().getId());
     }
 
     @Test
@@ -201,9 +214,7 @@ class ArticleApiTest {
 
         articleApiTestClient.deleteComment(article.getSlug(), commentView.getId(), user.getToken());
 
-        var savedArticle = articleRepository.findAll().blockFirst();
-        assert savedArticle != null;
-        assertThat(savedArticle.getComments()).isEmpty();
+        assertThat(commentRepository.count().block()).isZero();
     }
 
     @Test
@@ -3,21 +3,29 @@ package com.realworld.webfluxfn.repository;
 import com.realworld.testharness.article.ArticleSamples;
 import com.realworld.testharness.user.UserSamples;
 import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.migration.FavoritesCountBackfill;
+import com.realworld.webfluxfn.persistence.repository.ArticleCursor;
+import com.realworld.webfluxfn.persistence.repository.ArticleProjection;
 import com.realworld.webfluxfn.persistence.repository.ArticleRepository;
-import com.realworld.webfluxfn.service.user.PasswordService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 @DataMongoTest
 class ArticleRepositoryTest {
@@ -26,6 +34,9 @@ class ArticleRepositoryTest {
     @Autowired
     ArticleRepository articleRepository;
 
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
     @BeforeEach
     void setUp() {
         articleRepository.deleteAll().block();
@@ -41,7 +52,9 @@ class ArticleRepositoryTest {
                     .filter(article -> authorIds.contains(article.getAuthorId()))
                     .sorted(mostRecent)
                     .toList();
-            var actual = articleRepository.findNewestArticlesByAuthorIds(authorIds, 0, 20).collectList().block();
+            var actual = articleRepository.findNewestArticlesByAuthorIds(authorIds,
+                    null, ArticleProjection.FULL, null, 0, 20)
+                    .collectList().block();
             assertThat(actual).isEqualTo(expected);
         }
 
@@ -56,9 +69,26 @@ class ArticleRepositoryTest {
                     .skip(offset)
                     .limit(limit)
                     .toList();
-            var actual = articleRepository.findNewestArticlesByAuthorIds(authorIds, offset, limit).collectList().block();
+            var actual = articleRepository.findNewestArticlesByAuthorIds(authorIds,
+                    null, ArticleProjection.FULL, null, offset, limit)
+                    .collectList().block();
             assertThat(actual).isEqualTo(expected);
         }
+
+        @Test
+        void shouldNarrowFavoritingUsersDownToViewer() {
+            var viewerId = "viewer";
+            createArticles(2, (article, i) -> article.authorId("author")
+                    .favoritingUserIds(i == 0 ? List.of("user 1", viewerId) : List.of("user 1")));
+
+            var actual = articleRepository.findNewestArticlesByAuthorIds(List.of("author"), viewerId, ArticleProjection.SUMMARY, null, 0, 10)
+                    .collectList()
+                    .block();
+
+            assert actual != null;
+            assertThat(actual).extracting(Article::getFavoritingUserIds).containsExactly(List.of(), List.of(viewerId));
+            assertThat(actual).extracting(Article::getFavoritesCount).containsExactly(1, 2);
+        }
     }
 
     @Nested
@@ -71,7 +101,8 @@ class ArticleRepositoryTest {
                     .limit(size)
                     .toList();
 
-            var actual = articleRepository.findNewestArticlesFilteredBy("test_tag_2", null, null, size, 0)
+            var actual = articleRepository.findNewestArticlesFilteredBy("test_tag_2", null, null,
+                    null, ArticleProjection.FULL, null, size, 0)
                     .collectList()
                     .block();
 
@@ -89,7 +120,7 @@ class ArticleRepositoryTest {
                     .limit(5)
                     .toList();
 
-            var actual = articleRepository.findNewestArticlesFilteredBy(null, null, null, size, offset)
+            var actual = articleRepository.findNewestArticlesFilteredBy(null, null, null, null, ArticleProjection.FULL, null, size, offset)
                     .collectList()
                     .block();
 
@@ -112,7 +143,8 @@ class ArticleRepositoryTest {
                     .skip(offset)
                     .toList();
 
-            var actual = articleRepository.findNewestArticlesFilteredBy(expectedTag, null, null, 0, offset)
+            var actual = articleRepository.findNewestArticlesFilteredBy(expectedTag, null, null,
+                    null, ArticleProjection.FULL, null, 0, offset)
                     .collectList()
                     .block();
 
@@ -135,7 +167,8 @@ class ArticleRepositoryTest {
                     .limit(limit)
                     .toList();
 
-            var actual = articleRepository.findNewestArticlesFilteredBy(null, expectedAuthor, null, limit, 0)
+            var actual = articleRepository.findNewestArticlesFilteredBy(null, expectedAuthor, null,
+                    null, ArticleProjection.FULL, null, limit, 0)
                     .collectList()
                     .block();
 
@@ -157,7 +190,8 @@ class ArticleRepositoryTest {
                     .limit(limit)
                     .toList();
 
-            var actual = articleRepository.findNewestArticlesFilteredBy(null, null, favoritingUser, limit, 0)
+            var actual = articleRepository.findNewestArticlesFilteredBy(null, null, favoritingUser,
+                    null, ArticleProjection.FULL, null, limit, 0)
                     .collectList()
                     .block();
 
@@ -169,7 +203,7 @@ class ArticleRepositoryTest {
         void shouldReturnArticlesFilteredByMultipleFields() {
             var expectedAuthor = "new author id";
             var expectedTag = "target_tag";
-            var favoritingUser = UserSamples.sampleUser(new PasswordService()).build();
+            var favoritingUser = UserSamples.sampleUser().build();
             var limit = 20;
             var articles = createArticles(limit, (article, i) -> {
                 if (i > 10 && i <= 15) {
@@ -192,13 +226,222 @@ class ArticleRepositoryTest {
                     .limit(limit)
                     .toList();
 
-            var actual = articleRepository.findNewestArticlesFilteredBy(expectedTag, expectedAuthor, favoritingUser, limit, 0)
+            var actual = articleRepository.findNewestArticlesFilteredBy(expectedTag, expectedAuthor, favoritingUser,
+                    null, ArticleProjection.FULL, null, limit, 0)
+                    .collectList()
+                    .block();
+
+            assert actual != null;
+            assertThat(actual).isEqualTo(expected);
+        }
+
+        @Test
+        void shouldNarrowFavoritingUsersDownToViewer() {
+            var viewerId = "viewer";
+            createArticles(2, (article, i) -> {
+                article.favoritingUserIds(i == 0 ? List.of("user 1", viewerId, "user 2") : List.of("user 1"));
+            });
+
+            var actual = articleRepository.findNewestArticlesFilteredBy(null, null, null, viewerId, ArticleProjection.FULL, null, 10, 0)
                     .collectList()
                     .block();
 
             assert actual != null;
+            assertThat(actual).extracting(Article::getFavoritingUserIds)
+                    .containsExactly(List.of(), List.of(viewerId));
+            assertThat(actual).extracting(Article::getFavoritesCount).containsExactly(1, 3);
+        }
+
+        @Test
+        void shouldPageAfterCursorThroughArticlesCreatedAtSameTime() {
+            var createdAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+            var expected = createArticles(7, (article, i) -> article.createdAt(createdAt.plusSeconds(i / 3))).stream()
+                    .sorted(mostRecent.thenComparing(Article::getId, Comparator.reverseOrder()))
+                    .toList();
+
+            var actual = new ArrayList<Article>();
+            ArticleCursor cursor = null;
+            do {
+                var page = articleRepository.findNewestArticlesFilteredBy(null, null, null, null, ArticleProjection.FULL, cursor, 2, 0)
+                        .collectList()
+                        .block();
+                assert page != null;
+                actual.addAll(page);
+                cursor = page.isEmpty() ? null : ArticleCursor.of(page.get(page.size() - 1));
+            } while (cursor != null);
+
             assertThat(actual).isEqualTo(expected);
         }
+
+        @Test
+        void shouldLeaveOutBodyInSummary() {
+            createArticles(2);
+
+            var actual = articleRepository.findNewestArticlesFilteredBy(null, null, null, null, ArticleProjection.SUMMARY, null, 10, 0)
+                    .collectList()
+                    .block();
+
+            assert actual != null;
+            assertThat(actual).hasSize(2);
+            assertThat(actual).allSatisfy(article -> {
+                assertThat(article.getBody()).isNull();
+                assertThat(article.getTitle()).startsWith(ArticleSamples.DEFAULT_ARTICLE_TITLE);
+            });
+        }
+    }
+
+    @Nested
+    class CountArticles {
+        @Test
+        void shouldCountAllArticlesMatchingFilters() {
+            var expectedTag = "target_tag";
+            var expectedAuthor = "new author id";
+            createArticles(8, (article, i) -> {
+                if (i < 5) {
+                    article.tags(List.of(expectedTag));
+                }
+                if (i > 2) {
+                    article.authorId(expectedAuthor);
+                }
+            });
+
+            assertThat(articleRepository.countArticlesFilteredBy(null, null, null).block()).isEqualTo(8);
+            assertThat(articleRepository.countArticlesFilteredBy(expectedTag, null, null).block()).isEqualTo(5);
+            assertThat(articleRepository.countArticlesFilteredBy(expectedTag, expectedAuthor, null).block()).isEqualTo(2);
+            assertThat(articleRepository.countArticlesByAuthorIds(List.of(expectedAuthor, "unknown")).block()).isEqualTo(5);
+        }
+    }
+
+    @Nested
+    class FavoritingUsers {
+        @Test
+        void shouldAddFavoritingUserOnlyOnce() {
+            var article = createArticles(1).get(0);
+
+            articleRepository.addFavoritingUser(article.getSlug(), "user 1").block();
+            var actual = articleRepository.addFavoritingUser(article.getSlug(), "user 1").block();
+
+            assert actual != null;
+            assertThat(actual.getFavoritingUserIds()).containsExactly("user 1");
+            assertThat(actual.getFavoritesCount()).isEqualTo(1);
+        }
+
+        @Test
+        void shouldRemoveFavoritingUser() {
+            var article = createArticles(1, (a, i) -> a.favoritingUserIds(List.of("user 1", "user 2"))).get(0);
+
+            var actual = articleRepository.removeFavoritingUser(article.getSlug(), "user 1").block();
+
+            assert actual != null;
+            assertThat(actual.getFavoritingUserIds()).isEmpty();
+            assertThat(actual.getFavoritesCount()).isEqualTo(1);
+            var stored = articleRepository.findBySlug(article.getSlug()).block();
+            assert stored != null;
+            assertThat(stored.getFavoritingUserIds()).containsExactly("user 2");
+        }
+
+        @Test
+        void shouldNotDecrementCountForNonFavoritingUser() {
+            var article = createArticles(1, (a, i) -> a.favoritingUserIds(List.of("user 1"))).get(0);
+
+            var actual = articleRepository.removeFavoritingUser(article.getSlug(), "user 2").block();
+
+            assert actual != null;
+            assertThat(actual.getFavoritingUserIds()).isEmpty();
+            assertThat(actual.getFavoritesCount()).isEqualTo(1);
+        }
+
+        @Test
+        void shouldNotLoseConcurrentFavorites() {
+            var article = createArticles(1).get(0);
+            var userIds = IntStream.range(0, 20).mapToObj(i -> "user " + i).toList();
+
+            Flux.fromIterable(userIds)
+                    .flatMap(userId -> articleRepository.addFavoritingUser(article.getSlug(), userId))
+                    .blockLast();
+
+            var actual = articleRepository.findBySlug(article.getSlug()).block();
+            assert actual != null;
+            assertThat(actual.getFavoritingUserIds()).containsExactlyInAnyOrderElementsOf(userIds);
+            assertThat(actual.getFavoritesCount()).isEqualTo(userIds.size());
+        }
+
+        @Test
+        void shouldNarrowFavoritingUsersDownToActingUser() {
+            var article = createArticles(1, (a, i) -> a.favoritingUserIds(List.of("user 1", "user 2"))).get(0);
+
+            var actual = articleRepository.addFavoritingUser(article.getSlug(), "user 3").block();
+
+            assert actual != null;
+            assertThat(actual.getFavoritingUserIds()).containsExactly("user 3");
+            assertThat(actual.getFavoritesCount()).isEqualTo(3);
+            assertThat(actual.getBody()).isEqualTo(article.getBody());
+        }
+
+        @Test
+        void shouldReturnEmptyForUnknownSlug() {
+            var actual = articleRepository.addFavoritingUser("unknown slug", "user 1").block();
+            assertThat(actual).isNull();
+        }
+    }
+
+    @Nested
+    class ArticleContent {
+        @Test
+        void shouldUpdateContentWithoutTouchingFavorites() {
+            var article = createArticles(1, (a, i) -> a.favoritingUserIds(List.of("user 1"))).get(0);
+            articleRepository.addFavoritingUser(article.getSlug(), "user 2").block();
+
+            var actual = articleRepository.updateContent(article.getSlug(), article.getAuthorId(), "new title", null, "new body")
+                    .block();
+
+            assert actual != null;
+            assertThat(actual.getSlug()).isEqualTo("new-title");
+            assertThat(actual.getDescription()).isEqualTo(article.getDescription());
+            assertThat(actual.getBody()).isEqualTo("new body");
+            var stored = articleRepository.findBySlug("new-title").block();
+            assert stored != null;
+            assertThat(stored.getFavoritingUserIds()).containsExactly("user 1", "user 2");
+            assertThat(stored.getFavoritesCount()).isEqualTo(2);
+        }
+
+        @Test
+        void shouldNotUpdateArticleOfAnotherAuthor() {
+            var article = createArticles(1).get(0);
+
+            var actual = articleRepository.updateContent(article.getSlug(), "another author", "new title", null, null).block();
+
+            assertThat(actual).isNull();
+            assertThat(articleRepository.findBySlug(article.getSlug()).block()).isNotNull();
+        }
+    }
+
+    @Nested
+    class BackfillFavoritesCount {
+        @Test
+        void shouldStoreCountOfArticlesWithoutIt() {
+            var article = createArticles(1, (a, i) -> a.favoritingUserIds(List.of("user 1", "user 2"))).get(0);
+            mongoTemplate.updateFirst(Query.query(where("_id").is(article.getId())),
+                    new Update().unset(Article.FAVORITES_COUNT_FIELD_NAME), Article.class).block();
+
+            var backfilled = new FavoritesCountBackfill(mongoTemplate).backfill().block();
+
+            assertThat(backfilled).isEqualTo(1);
+            var actual = articleRepository.findNewestArticlesFilteredBy(null, null, null,
+                    null, ArticleProjection.FULL, null, 10, 0)
+                    .blockFirst();
+            assert actual != null;
+            assertThat(actual.getFavoritesCount()).isEqualTo(2);
+        }
+
+        @Test
+        void shouldSkipArticlesWithCount() {
+            createArticles(3);
+
+            var backfilled = new FavoritesCountBackfill(mongoTemplate).backfill().block();
+
+            assertThat(backfilled).isZero();
+        }
     }
 
     private List<Article> createArticles(int size) {
@@ -0,0 +1,117 @@
+package com.realworld.webfluxfn.repository;
+
+import com.realworld.webfluxfn.persistence.entity.Article;
+import com.realworld.webfluxfn.persistence.entity.Comment;
+import com.realworld.webfluxfn.persistence.migration.EmbeddedCommentsMigration;
+import com.realworld.webfluxfn.persistence.repository.CommentRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataMongoTest
+class CommentRepositoryTest {
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        commentRepository.deleteAll().block();
+        mongoTemplate.dropCollection(Article.class).block();
+    }
+
+    @Nested
+    class FindOldestCommentsByArticleId {
+        @Test
+        void shouldReturnCommentsOfArticleOrderedByOldestWithOffsetAndLimit() {
+            var offset = 2;
+            var limit = 3;
+            var expected = createComments(10, "article 1").stream()
+                    .sorted(Comparator.comparing(Comment::getCreatedAt))
+                    .skip(offset)
+                    .limit(limit)
+                    .toList();
+            createComments(5, "article 2");
+
+            var actual = commentRepository.findOldestCommentsByArticleId("article 1", offset, limit)
+                    .collectList()
+                    .block();
+
+            assertThat(actual).isEqualTo(expected);
+        }
+
+        @Test
+        void shouldDeleteCommentsOfArticleOnly() {
+            createComments(3, "article 1");
+            createComments(2, "article 2");
+
+            var deleted = commentRepository.deleteByArticleId("article 1").block();
+
+            assertThat(deleted).isEqualTo(3);
+            assertThat(commentRepository.count().block()).isEqualTo(2);
+        }
+    }
+
+    @Nested
+    class MigrateEmbeddedComments {
+        @Test
+        void shouldMoveEmbeddedCommentsIntoCommentCollection() {
+            var createdAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+            var article = new Document("_id", "article 1")
+                    .append("title", "title")
+                    .append("comments", List.of(
+                            new Document("_id", "comment 1").append("body", "body 1").append("authorId", "author 1")
+                                    .append("createdAt", createdAt),
+                            new Document("_id", "comment 2").append("body", "body 2").append("authorId", "author 2")
+                                    .append("createdAt", createdAt.plusSeconds(1))));
+            mongoTemplate.insert(article, mongoTemplate.getCollectionName(Article.class)).block();
+
+            var migrated = new EmbeddedCommentsMigration(mongoTemplate).migrate().block();
+
+            assertThat(migrated).isEqualTo(1);
+            var actual = commentRepository.findOldestCommentsByArticleId("article 1", 0, 10).collectList().block();
+            assertThat(actual).extracting(Comment::getId).containsExactly("comment 1", "comment 2");
+            assertThat(actual).extracting(Comment::getAuthorId).containsExactly("author 1", "author 2");
+            var migratedArticle = mongoTemplate.findById("article 1", Document.class,
+                    mongoTemplate.getCollectionName(Article.class)).block();
+            assert migratedArticle != null;
+            assertThat(migratedArticle).doesNotContainKey("comments");
+        }
+
+        @Test
+        void shouldBeNoOpWhenAlreadyMigrated() {
+            var migrated = new EmbeddedCommentsMigration(mongoTemplate).migrate().block();
+
+            assertThat(migrated).isZero();
+        }
+    }
+
+    private List<Comment> createComments(int size, String articleId) {
+        var comments = IntStream.range(0, size)
+                .mapToObj(i -> Comment.builder()
+                        .id(articleId + " comment " + i)
+                        .body("body " + i)
+                        .authorId("author " + i)
+                        .articleId(articleId)
+                        .createdAt(Instant.now().plus(size - i, ChronoUnit.SECONDS))
+                        .build())
+                .toList();
+        commentRepository.saveAll(comments).blockLast();
+        return comments;
+    }
+}
@@ -0,0 +1,26 @@
+package com.realworld.webfluxfn.repository;
+
+import com.realworld.webfluxfn.persistence.repository.QueryPlanCheckProperties;
+import com.realworld.webfluxfn.persistence.repository.QueryPlanChecker;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataMongoTest
+class QueryPlanCheckerTest {
+
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @Test
+    void shouldServeEveryQueryShapeFromAnIndex() {
+        var checker = new QueryPlanChecker(mongoTemplate, new QueryPlanCheckProperties(QueryPlanCheckProperties.Mode.FAIL));
+
+        var collectionScans = checker.findCollectionScans().collectList().block();
+
+        assertThat(collectionScans).isEmpty();
+    }
+}
@@ -1,15 +1,22 @@
 package com.realworld.webfluxfn.repository;
 
 import com.realworld.testharness.TestConfig;
+import com.realworld.testharness.article.ArticleSamples;
+import com.realworld.webfluxfn.persistence.entity.Article;
 import com.realworld.webfluxfn.persistence.entity.Tag;
+import com.realworld.webfluxfn.persistence.migration.TagArticleCountBackfill;
 import com.realworld.webfluxfn.persistence.repository.TagRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.test.context.ContextConfiguration;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -21,13 +28,71 @@ class TagRepositoryTest {
     @Autowired
     TagRepository tagRepository;
 
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        tagRepository.deleteAll().block();
+    }
+
     @Test
     void name() {
         var tags = List.of("tag1", "tag1", "tag2", "tag2", "tag3");
         var expectedTags = Set.of("tag1", "tag2", "tag3");
-        var returnedTags = tagRepository.saveAllTags(tags).map(Tag::getTagName).collectList().block();
+        var inserted = tagRepository.saveAllTags(tags).block();
         var allTags = tagRepository.findAll().map(Tag::getTagName).collectList().block();
-        assertThat(new HashSet<>(returnedTags)).isEqualTo(expectedTags);
+        assertThat(inserted).isEqualTo(3);
         assertThat(new HashSet<>(allTags)).isEqualTo(expectedTags);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldInsertOnlyMissingTags() {
+        tagRepository.saveAllTags(List.of("tag1", "tag2")).block();
+
+        var inserted = tagRepository.saveAllTags(List.of("tag2", "tag3")).block();
+
+        var allTags = tagRepository.findAll().map(Tag::getTagName).collectList().block();
+        assertThat(inserted).isEqualTo(1);
+        assertThat(allTags).hasSize(3);
+        assertThat(new HashSet<>(allTags)).isEqualTo(Set.of("tag1", "tag2", "tag3"));
+    }
+
+    @Test
+    void shouldCountArticlesOfTags() {
+        tagRepository.incrementArticleCounts(List.of("tag1", "tag2")).block();
+        tagRepository.incrementArticleCounts(List.of("tag2", "tag3", "tag3")).block();
+        tagRepository.decrementArticleCounts(List.of("tag1", "tag3")).block();
+
+        var articleCounts = tagRepository.findAll().collectMap(Tag::getTagName, Tag::getArticleCount).block();
+        assertThat(articleCounts).isEqualTo(Map.of("tag1", 0, "tag2", 2, "tag3", 0));
+    }
+
+    @Test
+    void shouldFindMostUsedTagsOnly() {
+        tagRepository.incrementArticleCounts(List.of("tag1", "tag2", "tag3")).block();
+        tagRepository.incrementArticleCounts(List.of("tag2", "tag3")).block();
+        tagRepository.incrementArticleCounts(List.of("tag3")).block();
+
+        var mostUsedTags = tagRepository.findMostUsedTags(2).map(Tag::getTagName).collectList().block();
+
+        assertThat(mostUsedTags).containsExactly("tag3", "tag2");
+    }
+
+    @Test
+    void shouldBackfillArticleCountOfTagsWithoutIt() {
+        mongoTemplate.insert(new Document("tagName", "tag1"), mongoTemplate.getCollectionName(Tag.class)).block();
+        mongoTemplate.dropCollection(Article.class).block();
+        mongoTemplate.insertAll(List.of(
+                ArticleSamples.sampleArticle().tags(List.of("tag1", "tag2")).build(),
+                ArticleSamples.sampleArticle().tags(List.of("tag1")).build())).blockLast();
+
+        var backfilled = new TagArticleCountBackfill(mongoTemplate).backfill().block();
+
+        assertThat(backfilled).isEqualTo(1);
+        var tag = tagRepository.findAll().blockFirst();
+        assert tag != null;
+        assertThat(tag.getArticleCount()).isEqualTo(2);
+        assertThat(new TagArticleCountBackfill(mongoTemplate).backfill().block()).isZero();
+    }
+}
@@ -0,0 +1,135 @@
+package com.realworld.webfluxfn.repository;
+
+import com.realworld.testharness.user.UserSamples;
+import com.realworld.webfluxfn.persistence.entity.Follow;
+import com.realworld.webfluxfn.persistence.entity.User;
+import com.realworld.webfluxfn.persistence.migration.FollowIndexBackfill;
+import com.realworld.webfluxfn.persistence.repository.FollowRepository;
+import com.realworld.webfluxfn.persistence.repository.UserRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataMongoTest
+class UserRepositoryTest {
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    FollowRepository followRepository;
+
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll().block();
+        followRepository.deleteAll().block();
+    }
+
+    @Test
+    void shouldAddFollowingIdOnlyOnce() {
+        var follower = saveUser();
+
+        var added = userRepository.addFollowingId(follower.getId(), "followee").block();
+        var addedAgain = userRepository.addFollowingId(follower.getId(), "followee").block();
+
+        assertThat(added).isTrue();
+        assertThat(addedAgain).isFalse();
+        assertThat(userRepository.findById(follower.getId()).block().getFollowingIds()).containsExactly("followee");
+    }
+
+    @Test
+    void shouldRemoveFollowingIdOnlyIfFollowed() {
+        var follower = saveUser();
+        userRepository.addFollowingId(follower.getId(), "followee").block();
+
+        var removed = userRepository.removeFollowingId(follower.getId(), "followee").block();
+        var removedAgain = userRepository.removeFollowingId(follower.getId(), "followee").block();
+
+        assertThat(removed).isTrue();
+        assertThat(removedAgain).isFalse();
+        assertThat(userRepository.findById(follower.getId()).block().getFollowingIds()).isEmpty();
+    }
+
+    @Test
+    void shouldAddFollowOnlyOnce() {
+        var added = followRepository.addFollow("follower", "followee").block();
+        var addedAgain = followRepository.addFollow("follower", "followee").block();
+
+        assertThat(added).isTrue();
+        assertThat(addedAgain).isFalse();
+        assertThat(followRepository.findFollowerIds("followee").collectList().block()).containsExactly("follower");
+    }
+
+    @Test
+    void shouldRemoveFollowOnlyIfStored() {
+        followRepository.addFollow("follower", "followee").block();
+
+        var removed = followRepository.removeFollow("follower", "followee").block();
+        var removedAgain = followRepository.removeFollow("follower", "followee").block();
+
+        assertThat(removed).isTrue();
+        assertThat(removedAgain).isFalse();
+        assertThat(followRepository.findFollowerIds("followee").collectList().block()).isEmpty();
+    }
+
+    @Test
+    void shouldNotOverwriteFollowsWhenUpdatingProfile() {
+        var follower = saveUser();
+        userRepository.addFollowingId(follower.getId(), "followee").block();
+        userRepository.incrementFollowersCount(follower.getId(), 1).block();
+
+        follower.setBio("new bio");
+        follower.setUsername(follower.getUsername() + "-renamed");
+        var updated = userRepository.updateProfile(follower).block();
+
+        assertThat(updated.getFollowingIds()).containsExactly("followee");
+        var saved = userRepository.findById(follower.getId()).block();
+        assertThat(saved.getBio()).isEqualTo("new bio");
+        assertThat(saved.getUsername()).isEqualTo(follower.getUsername());
+        assertThat(saved.getFollowingIds()).containsExactly("followee");
+        assertThat(saved.getFollowersCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldBackfillFollowIndexAndFollowersCount() {
+        var followee = saveUser();
+        var followers = List.of(saveUser(), saveUser());
+        followers.forEach(follower -> mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class))
+                .flatMap(users -> Mono.from(users.updateOne(
+                        new Document("_id", follower.getId()),
+                        new Document("$set", new Document(User.FOLLOWING_IDS_FIELD_NAME, List.of(followee.getId())))))).block());
+        var backfill = new FollowIndexBackfill(mongoTemplate);
+
+        var backfilled = backfill.backfill().block();
+        var backfilledAgain = backfill.backfill().block();
+
+        assertThat(backfilled).isEqualTo(2);
+        assertThat(backfilledAgain).isZero();
+        assertThat(followRepository.findFollowerIds(followee.getId()).collectList().block())
+                .containsExactlyInAnyOrderElementsOf(followers.stream().map(User::getId).toList());
+        assertThat(userRepository.findById(followee.getId()).block().getFollowersCount()).isEqualTo(2);
+        assertThat(followRepository.findById(Follow.makeInstance(followers.get(0).getId(), followee.getId()).getId()).block())
+                .isNotNull();
+    }
+
+    private User saveUser() {
+        var id = UUID.randomUUID().toString();
+        return userRepository.save(UserSamples.sampleUser()
+                .id(id)
+                .username("user-" + id)
+                .email(id + "@example.com")
+                .build()).block();
+    }
+}
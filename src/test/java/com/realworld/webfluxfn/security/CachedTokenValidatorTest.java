@@ -0,0 +1,91 @@
+package com.realworld.webfluxfn.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jws;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class CachedTokenValidatorTest {
+
+    private final CountingJwtSigner jwtSigner = new CountingJwtSigner(new JwtProperties(60), new JwtSigningProperties(null, List.of()));
+    private final MovableClock clock = new MovableClock(Instant.now());
+    private final CachedTokenValidator tokenValidator = new CachedTokenValidator(
+            jwtSigner, new JwtCacheProperties(100, Duration.ofMinutes(10)), clock);
+
+    @Test
+    void shouldVerifyRepeatedTokenOnlyOnce() {
+        var token = jwtSigner.generateToken("1");
+
+        var first = tokenValidator.validate(token);
+        var second = tokenValidator.validate(token);
+
+        assertThat(first).isEqualTo(new TokenPrincipal("1", token));
+        assertThat(second).isEqualTo(first);
+        assertThat(jwtSigner.validations).isEqualTo(1);
+    }
+
+    @Test
+    void shouldVerifyTokenAgainOnceExpired() {
+        var token = jwtSigner.generateToken("1");
+        tokenValidator.validate(token);
+
+        clock.instant = clock.instant.plusSeconds(61);
+        jwtSigner.expired = true;
+        var throwable = catchThrowable(() -> tokenValidator.validate(token));
+
+        assertThat(throwable).isInstanceOf(ExpiredJwtException.class);
+        assertThat(jwtSigner.validations).isEqualTo(2);
+    }
+
+    private static class CountingJwtSigner extends JwtSigner {
+        int validations;
+        boolean expired;
+
+        CountingJwtSigner(final JwtProperties jwtProperties, final JwtSigningProperties signingProperties) {
+            super(jwtProperties, signingProperties);
+        }
+
+        @Override
+        public Jws<Claims> validate(final String jwt) {
+            validations++;
+            final Jws<Claims> jws = super.validate(jwt);
+            if (expired) {
+                throw new ExpiredJwtException(jws.getHeader(), jws.getBody(), "expired");
+            }
+            return jws;
+        }
+    }
+
+    private static class MovableClock extends Clock {
+        Instant instant;
+
+        MovableClock(final Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.realworld.webfluxfn.security;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class JwtSignerTest {
+
+    private static final JwtProperties JWT_PROPERTIES = new JwtProperties(60);
+
+    @TempDir
+    Path keyDirectory;
+
+    @Test
+    void shouldVerifyTokenOfAnotherSignerWithTheSameSecret() {
+        var key = hmacKey("k1");
+        var signer = new JwtSigner(JWT_PROPERTIES, new JwtSigningProperties("k1", List.of(key)));
+        var otherNode = new JwtSigner(JWT_PROPERTIES, new JwtSigningProperties("k1", List.of(key)));
+
+        var claims = otherNode.validate(signer.generateToken("1"));
+
+        assertThat(claims.getHeader().getKeyId()).isEqualTo("k1");
+        assertThat(claims.getBody().getSubject()).isEqualTo("1");
+    }
+
+    @Test
+    void shouldVerifyTokenOfRotatedKey() throws IOException {
+        var oldKey = hmacKey("k1");
+        var newKey = pemKey("k2", SignatureAlgorithm.ES256);
+        var oldSigner = new JwtSigner(JWT_PROPERTIES, new JwtSigningProperties("k1", List.of(oldKey)));
+        var rotatedSigner = new JwtSigner(JWT_PROPERTIES, new JwtSigningProperties("k2", List.of(oldKey, newKey)));
+
+        var oldClaims = rotatedSigner.validate(oldSigner.generateToken("1"));
+        var newClaims = rotatedSigner.validate(rotatedSigner.generateToken("2"));
+
+        assertThat(oldClaims.getBody().getSubject()).isEqualTo("1");
+        assertThat(newClaims.getHeader().getKeyId()).isEqualTo("k2");
+        assertThat(newClaims.getBody().getSubject()).isEqualTo("2");
+    }
+
+    @Test
+    void shouldRejectTokenOfUnknownKey() {
+        var signer = new JwtSigner(JWT_PROPERTIES, new JwtSigningProperties("k1", List.of(hmacKey("k1"))));
+        var otherSigner = new JwtSigner(JWT_PROPERTIES, new JwtSigningProperties("k2", List.of(hmacKey("k2"))));
+
+        var throwable = catchThrowable(() -> signer.validate(otherSigner.generateToken("1")));
+
+        assertThat(throwable).isInstanceOf(UnsupportedJwtException.class);
+    }
+
+    private static JwtSigningProperties.SigningKey hmacKey(final String id) {
+        var secret = Encoders.BASE64.encode(Keys.secretKeyFor(SignatureAlgorithm.HS256).getEncoded());
+        return new JwtSigningProperties.SigningKey(id, SignatureAlgorithm.HS256, secret, null, null, null, null, null);
+    }
+
+    private JwtSigningProperties.SigningKey pemKey(final String id, final SignatureAlgorithm algorithm) throws IOException {
+        var keyPair = Keys.keyPairFor(algorithm);
+        var privateKey = writePem(id + ".key.pem", "PRIVATE KEY", keyPair.getPrivate().getEncoded());
+        var publicKey = writePem(id + ".pub.pem", "PUBLIC KEY", keyPair.getPublic().getEncoded());
+        return new JwtSigningProperties.SigningKey(id, algorithm, null, privateKey, publicKey, null, null, null);
+    }
+
+    private Resource writePem(final String fileName, final String type, final byte[] encoded) throws IOException {
+        var pem = "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder().encodeToString(encoded)
+                + "\n-----END " + type + "-----\n";
+        return new FileSystemResource(Files.writeString(keyDirectory.resolve(fileName), pem));
+    }
+}
@@ -0,0 +1,96 @@
+package com.realworld.webfluxfn.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class TokenVerificationServiceTest {
+
+    private final CountDownLatch verificationsReleased = new CountDownLatch(1);
+    private final BlockingJwtSigner jwtSigner = new BlockingJwtSigner(verificationsReleased);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TokenVerificationService tokenVerificationService = new TokenVerificationService(
+            new CachedTokenValidator(jwtSigner, new JwtCacheProperties(100, Duration.ofMinutes(10))),
+            new JwtVerificationProperties(JwtVerificationProperties.Mode.SCHEDULED, 1, 1),
+            meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        verificationsReleased.countDown();
+        tokenVerificationService.dispose();
+    }
+
+    @Test
+    void shouldVerifyOffTheCallingThreadOnlyOnce() {
+        verificationsReleased.countDown();
+        var token = jwtSigner.generateToken("1");
+
+        var first = tokenVerificationService.validate(token).block();
+        var second = tokenVerificationService.validate(token).block();
+
+        assertThat(first).isEqualTo(new TokenPrincipal("1", token));
+        assertThat(second).isEqualTo(first);
+        assertThat(jwtSigner.verifyingThreadName).startsWith("jwt-verification");
+        assertThat(meterRegistry.get("jwt.verification.queued").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("jwt.verification.time").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldFailFastWhenSaturated() throws InterruptedException {
+        var running = tokenVerificationService.validate(jwtSigner.generateToken("1")).subscribe();
+        assertThat(jwtSigner.verificationStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        var queued = tokenVerificationService.validate(jwtSigner.generateToken("2")).subscribe();
+
+        var throwable = catchThrowable(() -> tokenVerificationService.validate(jwtSigner.generateToken("3")).block());
+
+        assertThat(throwable).isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(meterRegistry.get("jwt.verification.rejected").counter().count()).isEqualTo(1);
+        running.dispose();
+        queued.dispose();
+    }
+
+    @Test
+    void shouldSplitQueueCapacityAcrossThreads() {
+        var mode = JwtVerificationProperties.Mode.SCHEDULED;
+
+        assertThat(new JwtVerificationProperties(mode, 4, 1000).getQueueCapacityPerThread()).isEqualTo(250);
+        assertThat(new JwtVerificationProperties(mode, 4, 10).getQueueCapacityPerThread()).isEqualTo(3);
+        assertThat(new JwtVerificationProperties(mode, 8, 1).getQueueCapacityPerThread()).isEqualTo(1);
+    }
+
+    private static class BlockingJwtSigner extends JwtSigner {
+        final CountDownLatch verificationStarted = new CountDownLatch(1);
+        final CountDownLatch verificationsReleased;
+        volatile String verifyingThreadName;
+
+        BlockingJwtSigner(final CountDownLatch verificationsReleased) {
+            super(new JwtProperties(60), new JwtSigningProperties(null, List.of()));
+            this.verificationsReleased = verificationsReleased;
+        }
+
+        @Override
+        public Jws<Claims> validate(final String jwt) {
+            verifyingThreadName = Thread.currentThread().getName();
+            verificationStarted.countDown();
+            try {
+                verificationsReleased.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.validate(jwt);
+        }
+    }
+}